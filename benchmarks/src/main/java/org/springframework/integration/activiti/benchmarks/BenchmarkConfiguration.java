@@ -0,0 +1,137 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.benchmarks;
+
+import org.activiti.spring.ProcessEngineFactoryBean;
+import org.activiti.spring.SpringProcessEngineConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundChannelAdapter;
+import org.springframework.integration.activiti.gateway.AsyncActivityBehaviorMessagingGateway;
+import org.springframework.integration.activiti.gateway.SyncActivityBehaviorMessagingGateway;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * An engine on an in-memory H2 database, with one process per benchmark, and the gateways and adapter they run through.
+ * <ul>
+ * <li>the asynchronous gateway's requests queue up on {@link #asyncRequests()}, so that the benchmark thread can answer
+ * them once the wait state has been committed</li>
+ * <li>the synchronous gateway's requests are answered right away, on the engine's thread</li>
+ * </ul>
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class BenchmarkConfiguration {
+
+    @Bean
+    public DataSource dataSource() {
+        SimpleDriverDataSource simpleDriverDataSource = new SimpleDriverDataSource();
+        simpleDriverDataSource.setDriverClass(org.h2.Driver.class);
+        simpleDriverDataSource.setUrl("jdbc:h2:mem:activiti-benchmarks;DB_CLOSE_DELAY=-1");
+        simpleDriverDataSource.setUsername("sa");
+        simpleDriverDataSource.setPassword("");
+
+        TransactionAwareDataSourceProxy transactionAwareDataSourceProxy = new TransactionAwareDataSourceProxy();
+        transactionAwareDataSourceProxy.setTargetDataSource(simpleDriverDataSource);
+        return transactionAwareDataSourceProxy;
+    }
+
+    @Bean
+    public DataSourceTransactionManager dataSourceTransactionManager() {
+        DataSourceTransactionManager dataSourceTransactionManager = new DataSourceTransactionManager();
+        dataSourceTransactionManager.setDataSource(dataSource());
+        return dataSourceTransactionManager;
+    }
+
+    @Bean
+    public ProcessEngineFactoryBean processEngine() {
+        SpringProcessEngineConfiguration configuration = new SpringProcessEngineConfiguration();
+        configuration.setTransactionManager(dataSourceTransactionManager());
+        configuration.setDatabaseType("h2");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDataSource(dataSource());
+        configuration.setDatabaseSchemaUpdate(SpringProcessEngineConfiguration.DB_SCHEMA_UPDATE_TRUE);
+        configuration.setDeploymentResources(new Resource[]{
+                new ClassPathResource("processes/benchmarkNoop.bpmn20.xml"),
+                new ClassPathResource("processes/benchmarkAsyncGateway.bpmn20.xml"),
+                new ClassPathResource("processes/benchmarkSyncGateway.bpmn20.xml")});
+
+        ProcessEngineFactoryBean processEngineFactoryBean = new ProcessEngineFactoryBean();
+        processEngineFactoryBean.setProcessEngineConfiguration(configuration);
+        return processEngineFactoryBean;
+    }
+
+    @Bean
+    public QueueChannel asyncRequests() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public DirectChannel asyncReplies() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public DirectChannel syncRequests() {
+        DirectChannel syncRequests = new DirectChannel();
+        syncRequests.subscribe(new MessageHandler() {
+            public void handleMessage(Message<?> message) throws MessagingException {
+                MessageChannel replyChannel = (MessageChannel) message.getHeaders().getReplyChannel();
+                replyChannel.send(MessageBuilder.withPayload("reply").copyHeaders(message.getHeaders()).build());
+            }
+        });
+        return syncRequests;
+    }
+
+    @Bean
+    public AsyncActivityBehaviorMessagingGateway asyncGateway() throws Exception {
+        AsyncActivityBehaviorMessagingGateway gateway = new AsyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(processEngine().getObject());
+        gateway.setRequestChannel(asyncRequests());
+        gateway.setReplyChannel(asyncReplies());
+        return gateway;
+    }
+
+    @Bean
+    public SyncActivityBehaviorMessagingGateway syncGateway() throws Exception {
+        SyncActivityBehaviorMessagingGateway gateway = new SyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(processEngine().getObject());
+        gateway.setRequestChannel(syncRequests());
+        gateway.setReplyChannel(new DirectChannel()); // required, but the replies come back on a temporary channel
+        return gateway;
+    }
+
+    @Bean
+    public ProcessStartingOutboundChannelAdapter processStartingOutboundChannelAdapter() throws Exception {
+        ProcessStartingOutboundChannelAdapter adapter = new ProcessStartingOutboundChannelAdapter();
+        adapter.setProcessEngine(processEngine().getObject());
+        adapter.setProcessDefinitionName("benchmarkNoop");
+        adapter.setProcessVariableHeaderMapper(new DefaultProcessVariableHeaderMapper());
+        return adapter;
+    }
+}
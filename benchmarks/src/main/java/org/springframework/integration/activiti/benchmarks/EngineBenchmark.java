@@ -0,0 +1,106 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.benchmarks;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundChannelAdapter;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end, against an in-memory H2 database (see {@link BenchmarkConfiguration}): process instances that pass through
+ * the asynchronous gateway (request, reply, signal) and the synchronous gateway, and process instances started through
+ * the engine and through the {@link ProcessStartingOutboundChannelAdapter}. Each operation is a whole process instance,
+ * so the numbers include the engine's own database work.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    private AnnotationConfigApplicationContext applicationContext;
+
+    private RuntimeService runtimeService;
+
+    private QueueChannel asyncRequests;
+
+    private DirectChannel asyncReplies;
+
+    private ProcessStartingOutboundChannelAdapter adapter;
+
+    private Message<?> trigger;
+
+    @Setup
+    public void setup() {
+        this.applicationContext = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+        this.runtimeService = this.applicationContext.getBean(ProcessEngine.class).getRuntimeService();
+        this.asyncRequests = this.applicationContext.getBean("asyncRequests", QueueChannel.class);
+        this.asyncReplies = this.applicationContext.getBean("asyncReplies", DirectChannel.class);
+        this.adapter = this.applicationContext.getBean(ProcessStartingOutboundChannelAdapter.class);
+        this.trigger = MessageBuilder.withPayload("trigger").build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.applicationContext.close();
+    }
+
+    @Benchmark
+    public Object asyncGatewayRoundTrip() {
+        ProcessInstance processInstance = this.runtimeService.startProcessInstanceByKey("benchmarkAsyncGateway");
+        Message<?> request = this.asyncRequests.receive(1000);
+        if (request == null) {
+            throw new IllegalStateException("no request for process instance " + processInstance.getId());
+        }
+        this.asyncReplies.send(MessageBuilder.withPayload("reply").copyHeaders(request.getHeaders()).build());
+        return processInstance;
+    }
+
+    @Benchmark
+    public Object syncGatewayRoundTrip() {
+        return this.runtimeService.startProcessInstanceByKey("benchmarkSyncGateway");
+    }
+
+    @Benchmark
+    public Object processStart() {
+        return this.runtimeService.startProcessInstanceByKey("benchmarkNoop");
+    }
+
+    @Benchmark
+    public void processStartThroughAdapter() {
+        this.adapter.handleMessage(this.trigger);
+    }
+}
@@ -0,0 +1,113 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.benchmarks;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.integration.activiti.gateway.AsyncActivityBehaviorMessagingGateway;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work the gateways do on either side of the engine, without the engine: building the request message for an
+ * execution ({@code doBasicOutboundMessageConstruction}), and turning a reply into the process variables for a signal
+ * ({@link ProcessSupport#signalProcessExecution}), with callbacks that don't touch the database.
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionMessagingBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int variableCount;
+
+    private ExposedGateway gateway;
+
+    private DefaultProcessVariableHeaderMapper mapper;
+
+    private ActivityExecution execution;
+
+    private Message<?> reply;
+
+    @Setup
+    public void setup() throws Exception {
+        this.mapper = new DefaultProcessVariableHeaderMapper();
+        this.mapper.setHeaderToProcessVariableNames("*");
+        this.mapper.afterPropertiesSet();
+
+        this.gateway = new ExposedGateway();
+        this.gateway.setHeaderMapper(this.mapper);
+
+        Map<String, Object> variables = BenchmarkExecutions.variables(this.variableCount);
+        this.execution = BenchmarkExecutions.execution("101", variables);
+        this.reply = MessageBuilder.withPayload("reply").copyHeaders(variables).build();
+    }
+
+    @Benchmark
+    public Message<?> outboundMessageConstruction() throws Exception {
+        return this.gateway.construct(this.execution).build();
+    }
+
+    @Benchmark
+    public void signalByExecution(final Blackhole blackhole) throws Exception {
+        ProcessSupport.signalProcessExecution(null, this.execution, new ProcessSupport.ProcessExecutionSignallerCallback() {
+            public void setProcessVariable(ProcessEngine en, ActivityExecution ex, String k, Object o) {
+                ex.setVariable(k, o);
+            }
+
+            public void signal(ProcessEngine en, ActivityExecution ex) {
+                blackhole.consume(ex);
+            }
+        }, this.mapper, this.reply);
+    }
+
+    @Benchmark
+    public void signalByExecutionId(final Blackhole blackhole) throws Exception {
+        ProcessSupport.signalProcessExecution(null, "101", new ProcessSupport.BulkProcessExecutionSignallerCallback() {
+            public void setProcessVariablesAndSignal(ProcessEngine en, String executionId, Map<String, Object> processVariables) {
+                blackhole.consume(processVariables);
+            }
+        }, this.mapper, this.reply);
+    }
+
+    /**
+     * opens up {@code doBasicOutboundMessageConstruction}, which is all this benchmark needs from the gateway
+     */
+    static class ExposedGateway extends AsyncActivityBehaviorMessagingGateway {
+        MessageBuilder<?> construct(ActivityExecution execution) throws Exception {
+            return doBasicOutboundMessageConstruction(execution);
+        }
+    }
+}
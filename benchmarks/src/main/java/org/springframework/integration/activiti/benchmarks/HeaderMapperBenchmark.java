@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultProcessVariableHeaderMapper#toHeaders} and {@link DefaultProcessVariableHeaderMapper#fromHeaders} for
+ * different numbers of variables, and for the different kinds of name patterns: exact names, prefixes, and "*".
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderMapperBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int variableCount;
+
+    @Param({"exact", "prefix", "all"})
+    private String patterns;
+
+    private DefaultProcessVariableHeaderMapper mapper;
+
+    private Map<String, Object> variables;
+
+    private MessageHeaders headers;
+
+    @Setup
+    public void setup() throws Exception {
+        String[] names;
+        if (this.patterns.equals("exact")) {
+            // every other variable, by name
+            names = new String[(this.variableCount + 1) / 2];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "var" + (i * 2);
+            }
+        } else if (this.patterns.equals("prefix")) {
+            names = new String[]{"var1*", "var2*"};
+        } else {
+            names = new String[]{"*"};
+        }
+
+        this.mapper = new DefaultProcessVariableHeaderMapper();
+        this.mapper.setProcessVariableToHeaderNames(names);
+        this.mapper.setHeaderToProcessVariableNames(names);
+        this.mapper.afterPropertiesSet();
+
+        this.variables = BenchmarkExecutions.variables(this.variableCount);
+        this.headers = MessageBuilder.withPayload("payload").copyHeaders(this.variables).build().getHeaders();
+    }
+
+    @Benchmark
+    public Map<String, Object> toHeaders() {
+        Map<String, Object> target = new HashMap<String, Object>();
+        this.mapper.toHeaders(null, this.variables, target);
+        return target;
+    }
+
+    @Benchmark
+    public Map<String, Object> fromHeaders() {
+        Map<String, Object> target = new HashMap<String, Object>();
+        this.mapper.fromHeaders(this.headers, target);
+        return target;
+    }
+}
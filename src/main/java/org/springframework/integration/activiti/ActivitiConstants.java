@@ -38,6 +38,33 @@ public abstract class ActivitiConstants {
 
     public static final String WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY = "activiti_spring_integration_processInstanceId";
 
+    /**
+     * Set on the replies of the process-starting gateway: whether the process instance had already ended when its start returned.
+     */
+    public static final String WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY = "activiti_spring_integration_processInstanceEnded";
+
+    /**
+     * The priority (an integer, higher is more urgent) with which a message waits for admission to the process-starting adapter.
+     * If it's not set, the standard {@link org.springframework.integration.MessageHeaders#PRIORITY} header is used instead.
+     */
+    public static final String WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY = "activiti_spring_integration_processStartPriority";
+
+    /**
+     * When the asynchronous gateway merges the replies for an execution, a reply with this header set to true completes the
+     * merged reply right away, instead of waiting for the window to close.
+     */
+    public static final String WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY = "activiti_spring_integration_replyComplete";
+
+    /**
+     * Set on the {@link org.springframework.integration.message.ErrorMessage}s for replies that couldn't be signalled: the class name of the cause.
+     */
+    public static final String WELL_KNOWN_SIGNAL_FAILURE_CAUSE_HEADER_KEY = "activiti_spring_integration_signalFailureCause";
+
+    /**
+     * Set on the {@link org.springframework.integration.message.ErrorMessage}s for replies that couldn't be signalled: the message of the cause.
+     */
+    public static final String WELL_KNOWN_SIGNAL_FAILURE_MESSAGE_HEADER_KEY = "activiti_spring_integration_signalFailureMessage";
+
     /**
      * Assuming #updateProcessVariablesFromReplyMessageHeaders is true, then any {@link org.springframework.integration.MessageHeaders} header key that starts with String will be propagated as an Activiti process variable.
      */
@@ -15,11 +15,16 @@ package org.springframework.integration.activiti;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.ProcessEngineImpl;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.Command;
 import org.activiti.engine.impl.pvm.PvmActivity;
 import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
 import org.springframework.integration.Message;
 import org.springframework.integration.activiti.mapping.ProcessVariableHeaderMapper;
+import org.springframework.util.Assert;
 
+import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,6 +48,33 @@ public abstract class ProcessSupport {
         vars.put(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, procInstanceId);
     }
 
+    /**
+     * Looks up the {@link ActivityExecution} that the engine is currently running on this thread, straight from the engine's
+     * own thread-bound context: there's no proxy, reflection, or allocation involved.
+     *
+     * @return the current execution, or null if the engine isn't executing anything on this thread
+     */
+    public static ActivityExecution getCurrentActivityExecution() {
+        try {
+            return Context.getExecutionContext().getExecution();
+        } catch (EmptyStackException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the {@link Command} through the engine's transactional {@link org.activiti.engine.impl.interceptor.CommandExecutor},
+     * so that everything the command does happens in one engine transaction.
+     *
+     * @param processEngine the process engine. Must be a {@link ProcessEngineImpl}.
+     * @param command       the command to run
+     * @return the result of the command
+     */
+    public static <T> T executeCommand(ProcessEngine processEngine, Command<T> command) {
+        Assert.isInstanceOf(ProcessEngineImpl.class, processEngine, "custom commands can only be run against a " + ProcessEngineImpl.class.getName());
+        return ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration().getCommandExecutorTxRequired().execute(command);
+    }
+
     public static void signalProcessExecution(ProcessEngine processEngine, ActivityExecution activityExecution,
                                               ProcessExecutionSignallerCallback callback, ProcessVariableHeaderMapper processVariableHeaderMapper,
                                               Message<?> message)
@@ -58,11 +90,35 @@ public abstract class ProcessSupport {
         callback.signal(processEngine, activityExecution);
     }
 
+    /**
+     * Maps the reply headers to process variables and hands them to the callback all at once, so that the callback can
+     * apply them and signal the execution in a single step. Only the id of the execution is needed, so callers don't
+     * have to look the execution up first.
+     */
+    public static void signalProcessExecution(ProcessEngine processEngine, String executionId,
+                                              BulkProcessExecutionSignallerCallback callback, ProcessVariableHeaderMapper processVariableHeaderMapper,
+                                              Message<?> message)
+            throws Exception {
+        Map<String, Object> vars = new HashMap<String, Object>();
+
+        processVariableHeaderMapper.fromHeaders(message.getHeaders(), vars);
+
+        callback.setProcessVariablesAndSignal(processEngine, executionId, vars);
+    }
+
     public static interface ProcessExecutionSignallerCallback {
         void setProcessVariable(ProcessEngine en, ActivityExecution ex, String k, Object o);
 
         void signal(ProcessEngine en, ActivityExecution ex);
     }
+
+    /**
+     * Receives all of the process variables for an execution at once, so that setting them and signalling the execution
+     * can happen together (for example, in one engine {@link Command}).
+     */
+    public static interface BulkProcessExecutionSignallerCallback {
+        void setProcessVariablesAndSignal(ProcessEngine en, String executionId, Map<String, Object> processVariables);
+    }
 }
 
 
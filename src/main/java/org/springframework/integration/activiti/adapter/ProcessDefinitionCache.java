@@ -0,0 +1,130 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.deploy.Deployer;
+import org.activiti.engine.impl.persistence.entity.DeploymentEntity;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers which process definition id the latest version of a process definition key resolved to, so that
+ * process instances can be started by id without asking the engine to look the key up every time.
+ * <p/>
+ * Entries expire after {@link #setTimeout(long) timeout} milliseconds. To see new deployments right away, register this
+ * cache with the engine as a custom post-deployer (for example, through the <code>customPostDeployers</code> property of
+ * the process engine configuration): every deployment then clears it, both when the deployment happens and once it's committed.
+ * {@link #evict(String)} and {@link #clear()} can also be called directly.
+ *
+ * @author Josh Long
+ */
+public class ProcessDefinitionCache implements Deployer {
+
+    private Log log = LogFactory.getLog(getClass());
+
+    /**
+     * how long, in milliseconds, a resolved id may be used. Zero or less means the cache is disabled.
+     */
+    private volatile long timeout = 60 * 1000;
+
+    private final ConcurrentMap<String, Entry> processDefinitionIds = new ConcurrentHashMap<String, Entry>();
+
+    @SuppressWarnings("unused")
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public boolean isEnabled() {
+        return this.timeout > 0;
+    }
+
+    /**
+     * @param processEngine        the engine to resolve the key against on a cache miss
+     * @param processDefinitionKey the process definition key
+     * @return the id of the latest version of the process definition
+     */
+    public String getProcessDefinitionId(ProcessEngine processEngine, String processDefinitionKey) {
+        long now = System.currentTimeMillis();
+
+        Entry entry = this.processDefinitionIds.get(processDefinitionKey);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.processDefinitionId;
+        }
+
+        ProcessDefinition processDefinition = processEngine.getRepositoryService().createProcessDefinitionQuery()
+                                                      .processDefinitionKey(processDefinitionKey).latestVersion().singleResult();
+        if (processDefinition == null) {
+            throw new ActivitiException("no process definition found for key '" + processDefinitionKey + "'");
+        }
+
+        if (isEnabled()) {
+            this.processDefinitionIds.put(processDefinitionKey, new Entry(processDefinition.getId(), now + this.timeout));
+        }
+        return processDefinition.getId();
+    }
+
+    public void evict(String processDefinitionKey) {
+        this.processDefinitionIds.remove(processDefinitionKey);
+    }
+
+    public void clear() {
+        this.processDefinitionIds.clear();
+    }
+
+    /**
+     * @return the number of keys currently cached
+     */
+    public int size() {
+        return this.processDefinitionIds.size();
+    }
+
+    public void deploy(DeploymentEntity deployment) {
+        clear();
+
+        // someone may resolve the old version before the new one is committed, so clear again once it is
+        CommandContext commandContext = Context.getCommandContext();
+        if (commandContext != null) {
+            commandContext.getTransactionContext().addTransactionListener(TransactionState.COMMITTED, new TransactionListener() {
+                public void execute(CommandContext commandContext) {
+                    clear();
+                }
+            });
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("cleared the process definition cache for deployment " + deployment.getId());
+        }
+    }
+
+    private static class Entry {
+
+        private final String processDefinitionId;
+
+        private final long expiresAt;
+
+        private Entry(String processDefinitionId, long expiresAt) {
+            this.processDefinitionId = processDefinitionId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.adapter;
+
+import org.springframework.integration.Message;
+
+import java.util.Map;
+
+/**
+ * Everything needed to start one {@link org.activiti.engine.runtime.ProcessInstance} on behalf of a trigger {@link Message}.
+ *
+ * @author Josh Long
+ */
+public class ProcessStartRequest {
+
+    private final Message<?> message;
+
+    private final String processDefinitionKey;
+
+    private final String processDefinitionId;
+
+    private final String businessKey;
+
+    private final Map<String, Object> processVariables;
+
+    public ProcessStartRequest(Message<?> message, String processDefinitionKey, String businessKey, Map<String, Object> processVariables) {
+        this(message, processDefinitionKey, null, businessKey, processVariables);
+    }
+
+    public ProcessStartRequest(Message<?> message, String processDefinitionKey, String processDefinitionId, String businessKey, Map<String, Object> processVariables) {
+        this.message = message;
+        this.processDefinitionKey = processDefinitionKey;
+        this.processDefinitionId = processDefinitionId;
+        this.businessKey = businessKey;
+        this.processVariables = processVariables;
+    }
+
+    /**
+     * @return the message that triggered this request
+     */
+    public Message<?> getMessage() {
+        return message;
+    }
+
+    public String getProcessDefinitionKey() {
+        return processDefinitionKey;
+    }
+
+    /**
+     * @return the id of the process definition to start, or null if the latest version of the key should be started
+     */
+    public String getProcessDefinitionId() {
+        return processDefinitionId;
+    }
+
+    /**
+     * @return the same request, without the resolved process definition id
+     */
+    public ProcessStartRequest withoutProcessDefinitionId() {
+        return new ProcessStartRequest(this.message, this.processDefinitionKey, null, this.businessKey, this.processVariables);
+    }
+
+    /**
+     * @return the business key, or null if the message didn't carry one
+     */
+    public String getBusinessKey() {
+        return businessKey;
+    }
+
+    public Map<String, Object> getProcessVariables() {
+        return processVariables;
+    }
+}
@@ -0,0 +1,139 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.mapping.HeaderMapper;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The logic shared by the components that start a {@link ProcessInstance} for a trigger {@link Message}.
+ *
+ * @author Josh Long
+ */
+abstract class ProcessStartSupport {
+
+    private static final String PROCESS_NAME_MUST_NOT_BE_NULL_MESSAGE = String.format(
+                                                                                              "you must specify a processDefinitionName, either through " +
+                                                                                                      "an inbound header mapped to the key '%s' " +
+                                                                                                      "(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY), " +
+                                                                                                      ", or on the 'process-definition-name' property of this adapter",
+                                                                                              ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY);
+
+    /**
+     * works out which process to start, with which process variables and business key, for the given message
+     *
+     * @param message                     the trigger message
+     * @param processDefinitionName       the process to start if the message doesn't name one
+     * @param processVariableHeaderMapper maps the message headers to process variables
+     * @param processEngine               the engine
+     * @param processDefinitionCache      resolves the process definition id. May be null.
+     * @return the request
+     */
+    @SuppressWarnings("unchecked")
+    static ProcessStartRequest buildProcessStartRequest(Message<?> message, String processDefinitionName, HeaderMapper processVariableHeaderMapper,
+                                                        ProcessEngine processEngine, ProcessDefinitionCache processDefinitionCache) {
+        Map<String, Object> processVariablesFromHeaders = new HashMap<String, Object>();
+
+        String processName = (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY);
+
+        if (!StringUtils.hasText(processName)) {
+            processName = processDefinitionName;
+        }
+
+        processVariableHeaderMapper.fromHeaders(message.getHeaders(), processVariablesFromHeaders);
+
+        Assert.notNull(processName, PROCESS_NAME_MUST_NOT_BE_NULL_MESSAGE);
+
+        // special case
+        //
+        String businessKey = (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY);
+
+        String processDefinitionId = null;
+        if (processDefinitionCache != null && processDefinitionCache.isEnabled()) {
+            processDefinitionId = processDefinitionCache.getProcessDefinitionId(processEngine, processName);
+        }
+
+        return new ProcessStartRequest(message, processName, processDefinitionId, businessKey, processVariablesFromHeaders);
+    }
+
+    /**
+     * starts the process instance through the {@link RuntimeService}. If the start fails because the request's process
+     * definition id has been undeployed since it was cached, it's evicted from the cache and the latest version of the key
+     * is started instead. Any other failure is rethrown.
+     *
+     * @param processEngine          the engine
+     * @param processDefinitionCache the cache the request's process definition id came from
+     * @param request                the request
+     * @return the new process instance
+     */
+    static ProcessInstance startProcessInstance(ProcessEngine processEngine, ProcessDefinitionCache processDefinitionCache, ProcessStartRequest request) {
+        try {
+            return doStartProcessInstance(processEngine.getRuntimeService(), request);
+        } catch (ActivitiException e) {
+            if (!isUndeployed(processEngine, request)) {
+                throw e;
+            }
+            processDefinitionCache.evict(request.getProcessDefinitionKey());
+            return doStartProcessInstance(processEngine.getRuntimeService(), request.withoutProcessDefinitionId());
+        }
+    }
+
+    /**
+     * was the request's process definition id resolved through the cache, and has it been undeployed since? We ask the
+     * engine rather than guess from the exception, which could just as well come from the process itself.
+     *
+     * @param processEngine the engine
+     * @param request       the request whose start failed
+     * @return whether the start may be retried by key
+     */
+    static boolean isUndeployed(ProcessEngine processEngine, ProcessStartRequest request) {
+        return request.getProcessDefinitionId() != null &&
+                       processEngine.getRepositoryService().createProcessDefinitionQuery()
+                               .processDefinitionId(request.getProcessDefinitionId()).count() == 0;
+    }
+
+    private static ProcessInstance doStartProcessInstance(RuntimeService runtimeService, ProcessStartRequest request) {
+        if (request.getProcessDefinitionId() != null) {
+            return request.getBusinessKey() != null ?
+                           runtimeService.startProcessInstanceById(request.getProcessDefinitionId(), request.getBusinessKey(), request.getProcessVariables()) :
+                           runtimeService.startProcessInstanceById(request.getProcessDefinitionId(), request.getProcessVariables());
+        }
+        return request.getBusinessKey() != null ?
+                       runtimeService.startProcessInstanceByKey(request.getProcessDefinitionKey(), request.getBusinessKey(), request.getProcessVariables()) :
+                       runtimeService.startProcessInstanceByKey(request.getProcessDefinitionKey(), request.getProcessVariables());
+    }
+
+    /**
+     * adds the ids (and business key, if any) of the process instance to the headers
+     *
+     * @param pi      the process instance
+     * @param headers the headers
+     */
+    static void encodeProcessInstanceIntoHeaders(ProcessInstance pi, Map<String, Object> headers) {
+        headers.put(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, pi.getId());
+        headers.put(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_ID_HEADER_KEY, pi.getProcessDefinitionId());
+        if (pi.getBusinessKey() != null) {
+            headers.put(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY, pi.getBusinessKey());
+        }
+    }
+}
@@ -13,27 +13,75 @@
 package org.springframework.integration.activiti.adapter;
 
 import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.ProcessEngineImpl;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.activiti.engine.runtime.ProcessInstance;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.integration.activiti.metrics.Instrumentation;
+import org.springframework.integration.activiti.metrics.NoOpInstrumentation;
+import org.springframework.integration.activiti.util.MessageBatcher;
+import org.springframework.integration.activiti.util.PriorityAdmissionQueue;
+import org.springframework.integration.activiti.util.RecentKeyIndex;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.mapping.HeaderMapper;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Supports spawning a {@link org.activiti.engine.runtime.ProcessInstance} as a result of a trigger {@link org.springframework.integration.Message}.
  * The component also supports propagating headers as processVariables. This support is similar
  * to the classic EIP book's "Process Manager" pattern. Thanks to Mark Fisher for the idea.
+ * <p/>
+ * By default, every message starts its process instance right away, in its own engine transaction. If
+ * {@link #setBatchSize(int) batchSize} is greater than one, messages are instead collected (up to {@link #setBatchSize(int) batchSize}
+ * messages, or for at most {@link #setBatchTimeout(long) batchTimeout} milliseconds) and started together, in one engine
+ * transaction, on a worker thread. If the batch fails as a whole, each message is retried on its own, so that one bad message
+ * doesn't take the others down with it.
+ * <p/>
+ * The outcome for each message can be reported: if a {@link #setReplyChannel(MessageChannel) replyChannel} is set, it
+ * receives a message whose payload is the new process instance's id, and if an {@link #setErrorChannel(MessageChannel) errorChannel}
+ * is set, it receives an {@link ErrorMessage} for every message that couldn't start its process instance. In batching mode,
+ * failures are logged when there's no error channel.
+ * <p/>
+ * If a {@link #setProcessDefinitionCache(ProcessDefinitionCache) processDefinitionCache} is set, process definition keys
+ * are resolved to the id of their latest version through it, and process instances are then started by id. If a cached
+ * id's definition has since been undeployed, it's evicted and the key is resolved again.
+ * <p/>
+ * In {@link #setIdempotent(boolean) idempotent} mode, a message whose business key (under
+ * {@link ActivitiConstants#WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY}) has already started an instance of the same process
+ * is treated as a duplicate (a redelivery, say), and is sent to the {@link #setDiscardChannel(MessageChannel) discardChannel},
+ * or dropped if there's none. The (process, business key) pairs started in the last {@link #setIdempotencyWindow(long) idempotencyWindow}
+ * milliseconds are kept in memory, so most duplicates are caught without going to the database. Pairs the adapter hasn't
+ * seen are checked against the engine's historic process instances, which include the ones that have already ended, or,
+ * if the engine keeps no history, against its running ones. With the history level set to "none", a business key whose
+ * process instance has ended (and that the adapter has forgotten) is started again.
+ * <p/>
+ * To absorb bursts, set {@link #setStartsPerSecond(double) startsPerSecond} and/or {@link #setAdmissionQueueCapacity(int) admissionQueueCapacity}:
+ * messages then wait in a bounded queue (see {@link PriorityAdmissionQueue}) and are admitted at most {@code startsPerSecond}
+ * times a second per process definition key. Messages with a higher priority (under
+ * {@link ActivitiConstants#WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY}, or the standard priority header) jump the queue.
+ * <p/>
+ * With an {@link #setInstrumentation(Instrumentation) instrumentation}, the adapter records its messages, failures, how many
+ * messages are waiting on their process instance, and how long mapping and starting take.
  *
  * @author Josh Long
  * @since 2.1
  */
-public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupport implements MessageHandler {
+public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupport implements MessageHandler, DisposableBean {
 
     /**
      * Do you want all flows that come into this component to launch the same business process? Hard code the process name here.
@@ -41,13 +89,6 @@ public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupp
      */
     private String processDefinitionName;
 
-    private String processHeaderMustNotBeNullMessage = String.format(
-                                                                            "you must specify a processDefinitionName, either through " +
-                                                                                    "an inbound header mapped to the key '%s' " +
-                                                                                    "(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY), " +
-                                                                                    ", or on the 'process-definition-name' property of this adapter",
-                                                                            ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY);
-
     /**
      * A reference to the {@link ProcessEngine} (see {@link    org.activiti.spring.ProcessEngineFactoryBean}
      */
@@ -55,6 +96,58 @@ public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupp
 
     private HeaderMapper processVariableHeaderMapper;
 
+    /**
+     * how many messages to start in one engine transaction. One, the default, means every message is started as it arrives.
+     */
+    private int batchSize = 1;
+
+    private long batchTimeout = 10;
+
+    private int batchQueueCapacity = MessageBatcher.DEFAULT_CAPACITY;
+
+    private MessageChannel replyChannel;
+
+    private MessageChannel errorChannel;
+
+    private final MessagingTemplate messagingTemplate = new MessagingTemplate();
+
+    private volatile MessageBatcher messageBatcher;
+
+    private ProcessDefinitionCache processDefinitionCache;
+
+    private boolean idempotent;
+
+    private long idempotencyWindow = 10 * 60 * 1000;
+
+    private int idempotencyIndexSize = 10000;
+
+    private MessageChannel discardChannel;
+
+    /**
+     * the (process definition key, business key) pairs started recently. Only set in idempotent mode.
+     */
+    private volatile RecentKeyIndex startedBusinessKeys;
+
+    /**
+     * whether the engine records historic process instances, in which case the duplicate check queries those
+     */
+    private volatile boolean historyKept;
+
+    private double startsPerSecond = 0;
+
+    private int startBurst = 0;
+
+    /**
+     * zero means there's no admission queue, unless {@link #startsPerSecond} is set, in which case it's 1000
+     */
+    private int admissionQueueCapacity = 0;
+
+    private int admissionConcurrency = 1;
+
+    private volatile PriorityAdmissionQueue admissionQueue;
+
+    private volatile Instrumentation instrumentation = NoOpInstrumentation.INSTANCE;
+
     public void setProcessVariableHeaderMapper(HeaderMapper processVariableHeaderMapper) {
         this.processVariableHeaderMapper = processVariableHeaderMapper;
     }
@@ -62,6 +155,49 @@ public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupp
     @Override
     protected void onInit() throws Exception {
         Assert.notNull(this.processEngine, "'processEngine' must not be null!");
+        Assert.isTrue(this.batchSize > 0, "'batchSize' must be greater than zero");
+
+        if (this.batchSize > 1) {
+            MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+                public void handleBatch(List<Message<?>> messages) {
+                    startProcessInstances(messages);
+                }
+            });
+            batcher.setBatchSize(this.batchSize);
+            batcher.setBatchTimeout(this.batchTimeout);
+            batcher.setCapacity(this.batchQueueCapacity);
+            batcher.setName((getComponentName() == null ? "processStartingOutboundChannelAdapter" : getComponentName()) + "Batcher");
+            batcher.afterPropertiesSet();
+            this.messageBatcher = batcher;
+        }
+
+        if (this.idempotent) {
+            Assert.isInstanceOf(ProcessEngineImpl.class, this.processEngine, "idempotent mode needs a " + ProcessEngineImpl.class.getName());
+            this.historyKept = ((ProcessEngineImpl) this.processEngine).getProcessEngineConfiguration().getHistoryLevel() >
+                                       ProcessEngineConfigurationImpl.HISTORYLEVEL_NONE;
+            this.startedBusinessKeys = new RecentKeyIndex(this.idempotencyIndexSize, this.idempotencyWindow);
+        }
+
+        if (this.startsPerSecond > 0 || this.admissionQueueCapacity > 0) {
+            PriorityAdmissionQueue queue = new PriorityAdmissionQueue(new PriorityAdmissionQueue.AdmissionHandler() {
+                public void admit(Message<?> message) {
+                    try {
+                        startProcessInstance(message);
+                    } catch (RuntimeException e) {
+                        if (errorChannel == null) {
+                            logger.error("couldn't start a process instance for message " + message.getHeaders().getId(), e);
+                        }
+                    }
+                }
+            });
+            queue.setCapacity(this.admissionQueueCapacity > 0 ? this.admissionQueueCapacity : 1000);
+            queue.setPermitsPerSecond(this.startsPerSecond);
+            queue.setBurst(this.startBurst);
+            queue.setConcurrency(this.admissionConcurrency);
+            queue.setName((getComponentName() == null ? "processStartingOutboundChannelAdapter" : getComponentName()) + "Admission");
+            queue.afterPropertiesSet();
+            this.admissionQueue = queue;
+        }
     }
 
     @SuppressWarnings("unused")
@@ -74,30 +210,422 @@ public class ProcessStartingOutboundChannelAdapter extends IntegrationObjectSupp
         this.processDefinitionName = processDefinitionName;
     }
 
+    @SuppressWarnings("unused")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * how long, in milliseconds, to wait for a batch to fill up before its process instances are started anyway
+     *
+     * @param batchTimeout the batch timeout
+     */
+    @SuppressWarnings("unused")
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * how many messages may wait to be batched. When the queue is full, {@link #handleMessage(Message)} blocks until there's
+     * room. Defaults to {@link MessageBatcher#DEFAULT_CAPACITY}.
+     *
+     * @param batchQueueCapacity the batch queue capacity
+     */
+    @SuppressWarnings("unused")
+    public void setBatchQueueCapacity(int batchQueueCapacity) {
+        this.batchQueueCapacity = batchQueueCapacity;
+    }
+
+    /**
+     * receives a message, carrying the new process instance's id as its payload, for every process instance started
+     *
+     * @param replyChannel the reply channel
+     */
+    @SuppressWarnings("unused")
+    public void setReplyChannel(MessageChannel replyChannel) {
+        this.replyChannel = replyChannel;
+    }
+
+    /**
+     * receives an {@link ErrorMessage} for every message that couldn't start its process instance
+     *
+     * @param errorChannel the error channel
+     */
+    @SuppressWarnings("unused")
+    public void setErrorChannel(MessageChannel errorChannel) {
+        this.errorChannel = errorChannel;
+    }
+
+    /**
+     * the cache used to resolve process definition keys. There's none by default, and the engine looks the key up on
+     * every start. Register the same cache as a post-deployer on the engine, or it'll keep starting the old version of a
+     * redeployed process until its entries expire (see {@link ProcessDefinitionCache}).
+     *
+     * @param processDefinitionCache the cache
+     */
+    @SuppressWarnings("unused")
+    public void setProcessDefinitionCache(ProcessDefinitionCache processDefinitionCache) {
+        this.processDefinitionCache = processDefinitionCache;
+    }
+
+    /**
+     * should messages whose business key has already started an instance of the same process be discarded?
+     *
+     * @param idempotent whether to discard duplicates
+     */
+    @SuppressWarnings("unused")
+    public void setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * how long, in milliseconds, a started (process, business key) pair is remembered. Ten minutes by default.
+     *
+     * @param idempotencyWindow the window
+     */
+    @SuppressWarnings("unused")
+    public void setIdempotencyWindow(long idempotencyWindow) {
+        this.idempotencyWindow = idempotencyWindow;
+    }
+
+    /**
+     * the most (process, business key) pairs to remember at once. 10000 by default.
+     *
+     * @param idempotencyIndexSize the maximum size of the index
+     */
+    @SuppressWarnings("unused")
+    public void setIdempotencyIndexSize(int idempotencyIndexSize) {
+        this.idempotencyIndexSize = idempotencyIndexSize;
+    }
+
+    /**
+     * receives the duplicate messages in idempotent mode. If there's none, duplicates are dropped.
+     *
+     * @param discardChannel the discard channel
+     */
+    @SuppressWarnings("unused")
+    public void setDiscardChannel(MessageChannel discardChannel) {
+        this.discardChannel = discardChannel;
+    }
+
+    /**
+     * how many process instances of any one process definition may be started per second. Zero, the default, means there's no limit.
+     *
+     * @param startsPerSecond the rate limit
+     */
+    @SuppressWarnings("unused")
+    public void setStartsPerSecond(double startsPerSecond) {
+        this.startsPerSecond = startsPerSecond;
+    }
+
+    /**
+     * how many process instances of one process definition may be started at once after a quiet spell. Defaults to one second's worth.
+     *
+     * @param startBurst the burst size
+     */
+    @SuppressWarnings("unused")
+    public void setStartBurst(int startBurst) {
+        this.startBurst = startBurst;
+    }
+
+    /**
+     * how many messages may wait for admission before senders block
+     *
+     * @param admissionQueueCapacity the admission queue capacity
+     */
+    @SuppressWarnings("unused")
+    public void setAdmissionQueueCapacity(int admissionQueueCapacity) {
+        this.admissionQueueCapacity = admissionQueueCapacity;
+    }
+
+    /**
+     * how many threads admit messages from the admission queue. One by default.
+     *
+     * @param admissionConcurrency the number of admission threads
+     */
+    @SuppressWarnings("unused")
+    public void setAdmissionConcurrency(int admissionConcurrency) {
+        this.admissionConcurrency = admissionConcurrency;
+    }
+
+    @SuppressWarnings("unused")
+    public void setInstrumentation(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation == null ? NoOpInstrumentation.INSTANCE : instrumentation;
+    }
+
+    /**
+     * @return the number of messages waiting for admission
+     */
+    public int getAdmissionQueueDepth() {
+        return this.admissionQueue == null ? 0 : this.admissionQueue.getQueueDepth();
+    }
+
+    /**
+     * @return the average time, in milliseconds, that admitted messages spent waiting for admission
+     */
+    public double getAverageAdmissionWaitTime() {
+        return this.admissionQueue == null ? 0 : this.admissionQueue.getAverageWaitTime();
+    }
+
+    /**
+     * @return the longest time, in milliseconds, that an admitted message spent waiting for admission
+     */
+    public long getMaxAdmissionWaitTime() {
+        return this.admissionQueue == null ? 0 : this.admissionQueue.getMaxWaitTime();
+    }
+
     public void handleMessage(Message<?> message) {
-        Map<String, Object> processVariablesFromHeaders = new HashMap<String, Object>();
+        this.instrumentation.recordRequest();
+        this.instrumentation.incrementInFlight();
+
+        PriorityAdmissionQueue queue = this.admissionQueue;
+        if (queue != null) {
+            queue.add(message, processDefinitionKeyFor(message), priorityOf(message));
+            return;
+        }
+        startProcessInstance(message);
+    }
+
+    private void startProcessInstance(Message<?> message) {
+        if (this.messageBatcher != null) {
+            this.messageBatcher.add(message);
+            return;
+        }
+
+        ProcessStartRequest request = null;
+        ProcessInstance pi;
+        try {
+            request = buildProcessStartRequest(message);
+            if (isDuplicate(request)) {
+                discard(message);
+                return;
+            }
+            pi = startProcessInstance(request);
+        } catch (RuntimeException e) {
+            forget(request);
+            sendError(message, e);
+            throw e;
+        }
+        sendReply(message, pi);
+    }
+
+    /**
+     * starts a process instance for every message, all in one engine transaction, falling back to one transaction per message
+     * if that fails
+     *
+     * @param messages the trigger messages
+     */
+    protected void startProcessInstances(List<Message<?>> messages) {
+        List<ProcessStartRequest> requests = new ArrayList<ProcessStartRequest>(messages.size());
+        for (Message<?> message : messages) {
+            ProcessStartRequest request = null;
+            try {
+                request = buildProcessStartRequest(message);
+                if (isDuplicate(request)) {
+                    discard(message);
+                } else {
+                    requests.add(request);
+                }
+            } catch (RuntimeException e) {
+                forget(request);
+                handleFailure(message, e);
+            }
+        }
+
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        List<ProcessInstance> processInstances;
+        try {
+            processInstances = ProcessSupport.executeCommand(this.processEngine, new StartProcessInstancesCommand(requests));
+            if (timed) {
+                instrumentation.recordEngineTime(System.nanoTime() - start);
+            }
+        } catch (RuntimeException batchException) {
+            if (requests.size() == 1) {
+                forget(requests.get(0));
+                handleFailure(requests.get(0).getMessage(), batchException);
+                return;
+            }
+
+            logger.warn("couldn't start a batch of " + requests.size() + " process instances; starting each on its own", batchException);
+
+            for (ProcessStartRequest request : requests) {
+                try {
+                    sendReply(request.getMessage(), startProcessInstance(request));
+                } catch (RuntimeException e) {
+                    forget(request);
+                    handleFailure(request.getMessage(), e);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            sendReply(requests.get(i).getMessage(), processInstances.get(i));
+        }
+    }
+
+    private ProcessStartRequest buildProcessStartRequest(Message<?> message) {
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        ProcessStartRequest request = ProcessStartSupport.buildProcessStartRequest(message, this.processDefinitionName, this.processVariableHeaderMapper,
+                                                                                          this.processEngine, this.processDefinitionCache);
+        if (timed) {
+            instrumentation.recordMappingTime(System.nanoTime() - start);
+        }
+        return request;
+    }
 
+    private ProcessInstance startProcessInstance(ProcessStartRequest request) {
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        ProcessInstance pi = ProcessStartSupport.startProcessInstance(this.processEngine, this.processDefinitionCache, request);
+        if (timed) {
+            instrumentation.recordEngineTime(System.nanoTime() - start);
+        }
+        return pi;
+    }
+
+    private String processDefinitionKeyFor(Message<?> message) {
         String processName = (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY);
+        return StringUtils.hasText(processName) ? processName : this.processDefinitionName;
+    }
+
+    /**
+     * the message's priority. A priority that isn't a number is ignored, and the message gets the default priority, 0.
+     */
+    private int priorityOf(Message<?> message) {
+        Object priority = message.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY);
+        if (priority == null) {
+            priority = message.getHeaders().getPriority();
+        }
+        if (priority == null) {
+            return 0;
+        }
+        if (priority instanceof Number) {
+            return ((Number) priority).intValue();
+        }
+        try {
+            return Integer.parseInt(priority.toString().trim());
+        } catch (NumberFormatException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("ignoring the priority '" + priority + "' of message " + message.getHeaders().getId() + "; it isn't a number");
+            }
+            return 0;
+        }
+    }
 
-        if (!StringUtils.hasText(processName)) {
-            processName = this.processDefinitionName;
+    /**
+     * in idempotent mode, claims the request's (process, business key) pair. A pair that's been claimed recently, or that
+     * already has a process instance, running or ended, is a duplicate.
+     */
+    private boolean isDuplicate(ProcessStartRequest request) {
+        RecentKeyIndex index = this.startedBusinessKeys;
+        if (index == null || request.getBusinessKey() == null) {
+            return false;
         }
 
-        processVariableHeaderMapper.fromHeaders(message.getHeaders(), processVariablesFromHeaders);
+        if (!index.add(idempotencyKey(request))) {
+            return true;
+        }
 
-        Assert.notNull(processName, processHeaderMustNotBeNullMessage);
+        // we haven't seen this pair lately, but it may have been started before we came up (or by someone else)
+        if (this.historyKept) {
+            return this.processEngine.getHistoryService().createHistoricProcessInstanceQuery()
+                           .processDefinitionKey(request.getProcessDefinitionKey())
+                           .processInstanceBusinessKey(request.getBusinessKey())
+                           .count() > 0;
+        }
+        return this.processEngine.getRuntimeService().createProcessInstanceQuery()
+                       .processDefinitionKey(request.getProcessDefinitionKey())
+                       .processInstanceBusinessKey(request.getBusinessKey())
+                       .count() > 0;
+    }
 
-        // special case
-        //
-        String businessKeyHeader = ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY;
-        ProcessInstance pi;
-        if (message.getHeaders().containsKey(businessKeyHeader)) {
-            String businessKey = (String) message.getHeaders().get(businessKeyHeader);
-            pi = processEngine.getRuntimeService().startProcessInstanceByKey(processName,businessKey, processVariablesFromHeaders);
-        } else {
-            pi = processEngine.getRuntimeService().startProcessInstanceByKey(processName, processVariablesFromHeaders);
+    /**
+     * releases the request's claim, so that a redelivery of a message that failed to start its process isn't seen as a duplicate
+     */
+    private void forget(ProcessStartRequest request) {
+        RecentKeyIndex index = this.startedBusinessKeys;
+        if (index != null && request != null && request.getBusinessKey() != null) {
+            index.remove(idempotencyKey(request));
         }
-        logger.debug("started process instance " + pi.getProcessDefinitionId() + "having business Id of " + pi.getBusinessKey());
     }
-}
 
+    private static String idempotencyKey(ProcessStartRequest request) {
+        return request.getProcessDefinitionKey() + '\u0000' + request.getBusinessKey();
+    }
+
+    private void discard(Message<?> message) {
+        this.instrumentation.decrementInFlight();
+        if (logger.isDebugEnabled()) {
+            logger.debug("discarding message " + message.getHeaders().getId() + "; its business key has already started a process instance");
+        }
+        if (this.discardChannel != null) {
+            this.messagingTemplate.send(this.discardChannel, message);
+        }
+    }
+
+    private void sendReply(Message<?> message, ProcessInstance pi) {
+        this.instrumentation.decrementInFlight();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("started process instance " + pi.getProcessDefinitionId() + " having business Id of " + pi.getBusinessKey());
+        }
+
+        if (this.replyChannel == null) {
+            return;
+        }
+
+        Map<String, Object> headers = new HashMap<String, Object>(message.getHeaders());
+        ProcessStartSupport.encodeProcessInstanceIntoHeaders(pi, headers);
+        MessageBuilder<String> builder = MessageBuilder.withPayload(pi.getId()).copyHeaders(headers);
+        try {
+            this.messagingTemplate.send(this.replyChannel, builder.build());
+        } catch (RuntimeException e) {
+            logger.error("couldn't send the reply for process instance " + pi.getId(), e);
+        }
+    }
+
+    private boolean sendError(Message<?> message, Throwable cause) {
+        this.instrumentation.recordError();
+        this.instrumentation.decrementInFlight();
+
+        if (this.errorChannel == null) {
+            return false;
+        }
+        try {
+            this.messagingTemplate.send(this.errorChannel,
+                                               new ErrorMessage(new MessagingException(message, "couldn't start a process instance for message " + message.getHeaders().getId(), cause)));
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("couldn't send the error message for message " + message.getHeaders().getId(), e);
+            return false;
+        }
+    }
+
+    private void handleFailure(Message<?> message, Throwable cause) {
+        if (!sendError(message, cause)) {
+            logger.error("couldn't start a process instance for message " + message.getHeaders().getId(), cause);
+        }
+    }
+
+    public void destroy() throws Exception {
+        if (this.admissionQueue != null) {
+            this.admissionQueue.destroy();
+        }
+        if (this.messageBatcher != null) {
+            this.messageBatcher.destroy();
+        }
+    }
+}
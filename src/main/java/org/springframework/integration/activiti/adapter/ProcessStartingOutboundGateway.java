@@ -0,0 +1,183 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.integration.activiti.mapping.CompiledPatternMatcher;
+import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.mapping.HeaderMapper;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The request/reply variant of {@link ProcessStartingOutboundChannelAdapter}: it starts a {@link ProcessInstance} for
+ * every request message, and replies with a message whose payload is the new process instance's id. The reply also carries
+ * the process instance id, process definition id and business key under the well known headers
+ * (see {@link ActivitiConstants}), and whether the process instance had already ended by the time the start returned.
+ * <p/>
+ * For short-lived processes, set {@link #setReplyProcessVariableNames(String...) replyProcessVariableNames} to have the
+ * matching process variables, as they stood when the start returned, copied onto the reply as headers. They're read in
+ * the same engine transaction that started the process instance, so there's no need to ask the
+ * {@link org.activiti.engine.HistoryService} for them later.
+ *
+ * @author Josh Long
+ * @since 2.1
+ */
+public class ProcessStartingOutboundGateway extends AbstractReplyProducingMessageHandler {
+
+    /**
+     * the process to start if the request doesn't name one under {@link ActivitiConstants#WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY}
+     */
+    private String processDefinitionName;
+
+    private ProcessEngine processEngine;
+
+    private HeaderMapper processVariableHeaderMapper;
+
+    private ProcessDefinitionCache processDefinitionCache;
+
+    private volatile CompiledPatternMatcher replyProcessVariableNames;
+
+    @SuppressWarnings("unused")
+    public void setProcessEngine(ProcessEngine processEngine) {
+        this.processEngine = processEngine;
+    }
+
+    @SuppressWarnings("unused")
+    public void setProcessDefinitionName(String processDefinitionName) {
+        this.processDefinitionName = processDefinitionName;
+    }
+
+    @SuppressWarnings("unused")
+    public void setProcessVariableHeaderMapper(HeaderMapper processVariableHeaderMapper) {
+        this.processVariableHeaderMapper = processVariableHeaderMapper;
+    }
+
+    /**
+     * the cache used to resolve process definition keys. There's none by default (see
+     * {@link ProcessStartingOutboundChannelAdapter#setProcessDefinitionCache(ProcessDefinitionCache)}).
+     *
+     * @param processDefinitionCache the cache
+     */
+    @SuppressWarnings("unused")
+    public void setProcessDefinitionCache(ProcessDefinitionCache processDefinitionCache) {
+        this.processDefinitionCache = processDefinitionCache;
+    }
+
+    /**
+     * names (or simple patterns, like "order*") of the process variables to copy onto the reply
+     *
+     * @param replyProcessVariableNames the process variable names
+     */
+    @SuppressWarnings("unused")
+    public void setReplyProcessVariableNames(String... replyProcessVariableNames) {
+        this.replyProcessVariableNames = new CompiledPatternMatcher(replyProcessVariableNames);
+    }
+
+    @Override
+    protected void onInit() {
+        super.onInit();
+        Assert.notNull(this.processEngine, "'processEngine' must not be null!");
+        Assert.notNull(this.processVariableHeaderMapper, "'processVariableHeaderMapper' must not be null!");
+    }
+
+    @Override
+    protected Object handleRequestMessage(Message<?> requestMessage) {
+        ProcessStartRequest request = ProcessStartSupport.buildProcessStartRequest(requestMessage, this.processDefinitionName,
+                                                                                          this.processVariableHeaderMapper, this.processEngine, this.processDefinitionCache);
+
+        Map<String, Object> replyHeaders;
+        if (this.replyProcessVariableNames == null) {
+            ProcessInstance pi = ProcessStartSupport.startProcessInstance(this.processEngine, this.processDefinitionCache, request);
+            replyHeaders = new HashMap<String, Object>();
+            ProcessStartSupport.encodeProcessInstanceIntoHeaders(pi, replyHeaders);
+            replyHeaders.put(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY, pi.isEnded());
+        } else {
+            replyHeaders = startProcessInstanceAndCaptureVariables(request);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("started process instance " + replyHeaders.get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY));
+        }
+
+        return MessageBuilder.withPayload(replyHeaders.get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY))
+                       .copyHeaders(replyHeaders);
+    }
+
+    private Map<String, Object> startProcessInstanceAndCaptureVariables(ProcessStartRequest request) {
+        try {
+            return ProcessSupport.executeCommand(this.processEngine, new StartAndCaptureVariablesCommand(request, this.replyProcessVariableNames));
+        } catch (ActivitiException e) {
+            if (!ProcessStartSupport.isUndeployed(this.processEngine, request)) {
+                throw e;
+            }
+            this.processDefinitionCache.evict(request.getProcessDefinitionKey());
+            return ProcessSupport.executeCommand(this.processEngine,
+                                                        new StartAndCaptureVariablesCommand(request.withoutProcessDefinitionId(), this.replyProcessVariableNames));
+        }
+    }
+
+    /**
+     * starts the process instance and, in the same transaction, builds the reply headers
+     */
+    static class StartAndCaptureVariablesCommand implements Command<Map<String, Object>> {
+
+        private final ProcessStartRequest request;
+
+        private final CompiledPatternMatcher processVariableNames;
+
+        StartAndCaptureVariablesCommand(ProcessStartRequest request, CompiledPatternMatcher processVariableNames) {
+            this.request = request;
+            this.processVariableNames = processVariableNames;
+        }
+
+        public Map<String, Object> execute(CommandContext commandContext) {
+            ProcessInstance pi = new StartProcessInstancesCommand(Collections.singletonList(this.request)).execute(commandContext).get(0);
+
+            Map<String, Object> headers = new HashMap<String, Object>();
+            ProcessStartSupport.encodeProcessInstanceIntoHeaders(pi, headers);
+            headers.put(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY, pi.isEnded());
+
+            // the variables are still on the (possibly ended) process instance entity at this point. Only the ones asked for
+            // are read, so the others are never deserialized
+            ActivityExecution execution = (ActivityExecution) pi;
+            CompiledPatternMatcher matcher = this.processVariableNames;
+            if (matcher.isExactNamesOnly()) {
+                for (String name : matcher.getExactNames()) {
+                    if (execution.hasVariable(name)) {
+                        headers.put(name, execution.getVariable(name));
+                    }
+                }
+            } else {
+                for (String name : execution.getVariableNames()) {
+                    if (matcher.matches(name)) {
+                        headers.put(name, execution.getVariable(name));
+                    }
+                }
+            }
+            return headers;
+        }
+    }
+}
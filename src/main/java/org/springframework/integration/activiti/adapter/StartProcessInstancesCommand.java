@@ -0,0 +1,49 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.impl.cmd.StartProcessInstanceCmd;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.runtime.ProcessInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Command} that starts a number of process instances in one engine transaction.
+ * The process instances are returned in the same order as the requests.
+ *
+ * @author Josh Long
+ */
+public class StartProcessInstancesCommand implements Command<List<ProcessInstance>> {
+
+    private final List<ProcessStartRequest> processStartRequests;
+
+    public StartProcessInstancesCommand(List<ProcessStartRequest> processStartRequests) {
+        this.processStartRequests = new ArrayList<ProcessStartRequest>(processStartRequests);
+    }
+
+    public List<ProcessInstance> execute(CommandContext commandContext) {
+        List<ProcessInstance> processInstances = new ArrayList<ProcessInstance>(this.processStartRequests.size());
+
+        for (ProcessStartRequest request : this.processStartRequests) {
+            // start by id if it's already been resolved, otherwise let the engine find the latest version of the key
+            StartProcessInstanceCmd<ProcessInstance> startProcessInstanceCmd = request.getProcessDefinitionId() != null ?
+                    new StartProcessInstanceCmd<ProcessInstance>(null, request.getProcessDefinitionId(), request.getBusinessKey(), request.getProcessVariables()) :
+                    new StartProcessInstanceCmd<ProcessInstance>(request.getProcessDefinitionKey(), null, request.getBusinessKey(), request.getProcessVariables());
+            processInstances.add(startProcessInstanceCmd.execute(commandContext));
+        }
+        return processInstances;
+    }
+}
@@ -21,14 +21,17 @@ import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.NamespaceHandlerSupport;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.activiti.adapter.ProcessStartingOutboundChannelAdapter;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundGateway;
 import org.springframework.integration.activiti.gateway.AbstractActivityBehaviorMessagingGateway;
 import org.springframework.integration.activiti.gateway.AsyncActivityBehaviorMessagingGateway;
 import org.springframework.integration.activiti.gateway.SyncActivityBehaviorMessagingGateway;
 import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.config.xml.AbstractConsumerEndpointParser;
 import org.springframework.integration.config.xml.AbstractInboundGatewayParser;
 import org.springframework.integration.config.xml.AbstractOutboundChannelAdapterParser;
 import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.util.xml.DomUtils;
 import org.w3c.dom.Element;
 
 /**
@@ -43,6 +46,7 @@ public class ActivitiNamespaceHandler extends NamespaceHandlerSupport {
     public void init() {
         registerBeanDefinitionParser("outbound-channel-adapter", new ProcessLaunchingOutboundChannelAdapterParser());
         registerBeanDefinitionParser("inbound-gateway", new InboundGatewayParser());
+        registerBeanDefinitionParser("outbound-gateway", new ProcessStartingOutboundGatewayParser());
     }
 }
 
@@ -57,6 +61,21 @@ class ProcessLaunchingOutboundChannelAdapterParser extends AbstractOutboundChann
 
         IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "process-engine");
         IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "process-definition-name");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-size");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-timeout");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-queue-capacity");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "reply-channel");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "error-channel");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "process-definition-cache");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "idempotent");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "idempotency-window");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "idempotency-index-size");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "discard-channel");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "starts-per-second");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "start-burst");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "admission-queue-capacity");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "admission-concurrency");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "instrumentation");
 
         // -------------------------------------------------------------
         // HEADER MAPPERS
@@ -79,6 +98,48 @@ class ProcessLaunchingOutboundChannelAdapterParser extends AbstractOutboundChann
     }
 }
 
+/**
+ * Parser for the outbound gateway, which starts a process instance for each request and replies with its id.
+ *
+ * @author Josh Long
+ */
+class ProcessStartingOutboundGatewayParser extends AbstractConsumerEndpointParser {
+    static private String HEADER_MAPPER_PROPERTY = "processVariableHeaderMapper";
+    static private String MAPPED_PROCESS_VARIABLES_ATTR = "mapped-message-headers";
+
+    @Override
+    protected String getInputChannelAttributeName() {
+        return "request-channel";
+    }
+
+    @Override
+    protected BeanDefinitionBuilder parseHandler(Element element, ParserContext parserContext) {
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition(ProcessStartingOutboundGateway.class.getName());
+
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "process-engine");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "process-definition-name");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "process-definition-cache");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "reply-channel", "outputChannel");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "reply-timeout", "sendTimeout");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "reply-process-variables", "replyProcessVariableNames");
+
+        String headerMapper = element.getAttribute("header-mapper");
+        String mappedProcessVariables = element.getAttribute(MAPPED_PROCESS_VARIABLES_ATTR);
+        if (StringUtils.hasText(headerMapper)) {
+            if (StringUtils.hasText(mappedProcessVariables)) {
+                parserContext.getReaderContext().error("the 'mapped-message-headers' attribute is not allowed when a 'header-mapper' has been specified", parserContext.extractSource(element));
+            }
+            builder.addPropertyReference(HEADER_MAPPER_PROPERTY, headerMapper);
+        } else {
+            BeanDefinitionBuilder headerMapperBuilder = BeanDefinitionBuilder.genericBeanDefinition(DefaultProcessVariableHeaderMapper.class.getName());
+            IntegrationNamespaceUtils.setValueIfAttributeDefined(headerMapperBuilder, element, MAPPED_PROCESS_VARIABLES_ATTR, "headerToProcessVariableNames");
+            builder.addPropertyValue(HEADER_MAPPER_PROPERTY, headerMapperBuilder.getBeanDefinition());
+        }
+
+        return builder;
+    }
+}
+
 /**
  * Parser for the inbound gateway, which has two modes,
  * one synchronous and one asynchronous. The default is the asynchronous mode.
@@ -93,10 +154,19 @@ class InboundGatewayParser extends AbstractInboundGatewayParser {
 
     static private String MAPPED_INBOUND_MESSAGE_HEADERS = "mapped-inbound-process-variables";
 
+    static private String SYNCHRONOUS = "synchronous";
+
+    static private String INSTRUMENTATION = "instrumentation";
+
+    static private String PAYLOAD_STRATEGY = "payload-strategy";
+
     @Override
     protected boolean isEligibleAttribute(String attributeName) {
         return !attributeName.equals(MAPPED_INBOUND_MESSAGE_HEADERS) &&
+               !attributeName.equals(SYNCHRONOUS) &&
                !attributeName.equals(MAPPED_OUTBOUND_MESSAGE_HEADERS) &&
+               !attributeName.equals(INSTRUMENTATION) &&
+               !attributeName.equals(PAYLOAD_STRATEGY) &&
                super.isEligibleAttribute(attributeName);
     }
 
@@ -107,6 +177,14 @@ class InboundGatewayParser extends AbstractInboundGatewayParser {
         super.doParse(element, parserContext, builder);
 
         IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "process-engine");
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, INSTRUMENTATION);
+        IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, PAYLOAD_STRATEGY);
+
+        // how to poll the reply channel, if it's pollable
+        Element pollerElement = DomUtils.getChildElementByTagName(element, "poller");
+        if (pollerElement != null) {
+            IntegrationNamespaceUtils.configurePollerMetadata(pollerElement, builder, parserContext);
+        }
 
         TypedStringValue boolTrue = new TypedStringValue("true");
 
@@ -132,7 +210,7 @@ class InboundGatewayParser extends AbstractInboundGatewayParser {
 
     @Override
     protected String getBeanClassName(Element element) {
-        String synchronousAttribute = element.getAttribute("synchronous"); // default is false, as asynchronous is a safer, more powerful option.
+        String synchronousAttribute = element.getAttribute(SYNCHRONOUS); // default is false, as asynchronous is a safer, more powerful option.
         boolean synchronous = StringUtils.hasText(synchronousAttribute) && Boolean.parseBoolean(synchronousAttribute);
 
         Class<? extends AbstractActivityBehaviorMessagingGateway> mgwClass = synchronous ?
@@ -26,11 +26,16 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.ActivitiConstants;
 import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.activiti.metrics.Instrumentation;
+import org.springframework.integration.activiti.metrics.NoOpInstrumentation;
 import org.springframework.integration.activiti.mapping.ProcessVariableHeaderMapper;
-import org.springframework.integration.activiti.util.ActivityExecutionFactoryBean;
 import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.util.Assert;
 
@@ -55,6 +60,10 @@ import java.util.Map;
  * {@link org.springframework.integration.activiti.ActivitiConstants#WELL_KNOWN_EXECUTION_ID_HEADER_KEY} (which the adapter {@link org.springframework.integration.Message} will have)
  * so that the Activiti runtime can signalProcessExecution that execution has completed successfully.
  * <p/>
+ * The payload of the request is an {@link ExecutionSnapshot} (the execution's ids and the selected process variables) rather
+ * than the live execution, so that the request can safely cross threads and be serialized. Set a {@link LiveExecutionPayloadStrategy}
+ * as the {@link #setPayloadStrategy(ExecutionPayloadStrategy) payloadStrategy} to get the old behaviour back.
+ * <p/>
  * Thanks to Dave Syer and Tom Baeyens for the help brainstorming.
  *
  * @author Josh Long
@@ -114,11 +123,27 @@ public abstract class AbstractActivityBehaviorMessagingGateway extends ReceiveTa
      */
     protected volatile MessageChannel requestChannel;
 
+    /**
+     * Receives the replies that couldn't be applied to their execution (and, for the synchronous gateway, the requests
+     * whose reply never arrived), wrapped in an {@link ErrorMessage}
+     */
+    protected volatile MessageChannel errorChannel;
+
     /**
      * Should we update the process variables based on the reply {@link org.springframework.integration.Message}'s {@link org.springframework.integration.MessageHeaders}?
      */
     protected volatile boolean updateProcessVariablesFromReplyMessageHeaders;
 
+    /**
+     * Records the timings and counts for this gateway. Records nothing, by default.
+     */
+    protected volatile Instrumentation instrumentation = NoOpInstrumentation.INSTANCE;
+
+    /**
+     * Decides the payload of the request messages. By default, it's an {@link ExecutionSnapshot}, not the live execution.
+     */
+    protected volatile ExecutionPayloadStrategy payloadStrategy = new ExecutionSnapshotPayloadStrategy();
+
     @SuppressWarnings("unused")
     public void setRequestChannel(MessageChannel requestChannel) {
         this.requestChannel = requestChannel;
@@ -129,6 +154,11 @@ public abstract class AbstractActivityBehaviorMessagingGateway extends ReceiveTa
         this.replyChannel = replyChannel;
     }
 
+    @SuppressWarnings("unused")
+    public void setErrorChannel(MessageChannel errorChannel) {
+        this.errorChannel = errorChannel;
+    }
+
     @SuppressWarnings("unused")
     public void setProcessEngine(ProcessEngine processEngine) {
         this.processEngine = processEngine;
@@ -144,6 +174,16 @@ public abstract class AbstractActivityBehaviorMessagingGateway extends ReceiveTa
         this.updateProcessVariablesFromReplyMessageHeaders = updateProcessVariablesFromReplyMessageHeaders;
     }
 
+    @SuppressWarnings("unused")
+    public void setInstrumentation(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation == null ? NoOpInstrumentation.INSTANCE : instrumentation;
+    }
+
+    @SuppressWarnings("unused")
+    public void setPayloadStrategy(ExecutionPayloadStrategy payloadStrategy) {
+        this.payloadStrategy = payloadStrategy;
+    }
+
     public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
         this.beanFactory = beanFactory;
     }
@@ -203,13 +243,11 @@ public abstract class AbstractActivityBehaviorMessagingGateway extends ReceiveTa
         processService = this.processEngine.getRuntimeService();
 
         if (this.headerMapper == null) {
-            ActivityExecutionFactoryBean activityExecutionFactoryBean = new ActivityExecutionFactoryBean();
-            activityExecutionFactoryBean.afterPropertiesSet();
-            ActivityExecution execution = activityExecutionFactoryBean.getObject();
-            this.headerMapper = new DefaultProcessVariableHeaderMapper(execution);
+            this.headerMapper = new DefaultProcessVariableHeaderMapper();
         }
 
         Assert.notNull(this.headerMapper, "the 'headerMapper' can't be null");
+        Assert.notNull(this.payloadStrategy, "the 'payloadStrategy' can't be null");
         Assert.notNull(this.processService, "'processService' can't be null");
         onInit();
     }
@@ -219,8 +257,71 @@ public abstract class AbstractActivityBehaviorMessagingGateway extends ReceiveTa
     }
 
     protected MessageBuilder<?> doBasicOutboundMessageConstruction(ActivityExecution execution) throws Exception {
-        Map<String, ?> headers = headerMapper.toHeaders(execution.getVariables());
-        return MessageBuilder.withPayload(execution).copyHeadersIfAbsent(contributeHeadersForOutboundMessage(execution)).copyHeaders(headers);
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        Map<String, Object> variables = (headerMapper instanceof DefaultProcessVariableHeaderMapper)
+                                                ? ((DefaultProcessVariableHeaderMapper) headerMapper).getMappedProcessVariables(execution)
+                                                : execution.getVariables();
+        Map<String, Object> contributedHeaders = contributeHeadersForOutboundMessage(execution);
+
+        // the mapped headers win over the contributed ones, as they're applied last
+        Map<String, Object> headers = new HashMap<String, Object>(((contributedHeaders.size() + variables.size() + 3) * 4) / 3 + 1);
+        headers.putAll(contributedHeaders);
+        if (headerMapper instanceof DefaultProcessVariableHeaderMapper) {
+            ((DefaultProcessVariableHeaderMapper) headerMapper).toHeaders(execution, variables, headers);
+        } else {
+            headers.putAll(headerMapper.toHeaders(variables));
+        }
+
+        if (timed) {
+            instrumentation.recordMappingTime(System.nanoTime() - start);
+        }
+        return MessageBuilder.withPayload(this.payloadStrategy.createPayload(execution, variables)).copyHeaders(headers);
+    }
+
+    /**
+     * sends a message that couldn't be handled, wrapped in an {@link ErrorMessage}, to the {@link #errorChannel}. The
+     * error message's headers describe the root cause, and carry the execution and process instance ids of the failed message.
+     *
+     * @param failedMessage the message that couldn't be handled
+     * @param description   what went wrong
+     * @param cause         the exception
+     * @return false if there's no error channel, or the error message couldn't be sent
+     */
+    protected boolean sendErrorMessage(Message<?> failedMessage, String description, Exception cause) {
+        if (this.errorChannel == null) {
+            return false;
+        }
+
+        Throwable rootCause = cause;
+        while (rootCause.getCause() != null && rootCause.getCause() != rootCause) {
+            rootCause = rootCause.getCause();
+        }
+
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put(ActivitiConstants.WELL_KNOWN_SIGNAL_FAILURE_CAUSE_HEADER_KEY, rootCause.getClass().getName());
+        if (rootCause.getMessage() != null) {
+            headers.put(ActivitiConstants.WELL_KNOWN_SIGNAL_FAILURE_MESSAGE_HEADER_KEY, rootCause.getMessage());
+        }
+        copyHeader(failedMessage, ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, headers);
+        copyHeader(failedMessage, ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, headers);
+
+        try {
+            this.messagingTemplate.send(this.errorChannel, new ErrorMessage(new MessagingException(failedMessage, description, cause), headers));
+            return true;
+        } catch (Exception e) {
+            log.error("couldn't send the error message for message " + failedMessage.getHeaders().getId(), e);
+            return false;
+        }
+    }
+
+    private static void copyHeader(Message<?> message, String name, Map<String, Object> headers) {
+        Object value = message.getHeaders().get(name);
+        if (value != null) {
+            headers.put(name, value);
+        }
     }
 
     public void setHeaderMapper(ProcessVariableHeaderMapper headerMapper) {
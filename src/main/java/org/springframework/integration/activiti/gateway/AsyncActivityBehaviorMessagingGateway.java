@@ -16,21 +16,37 @@ package org.springframework.integration.activiti.gateway;
 
 import org.activiti.engine.ProcessEngine;
 import org.activiti.engine.impl.bpmn.behavior.ReceiveTaskActivityBehavior;
+import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.pvm.delegate.ActivityBehavior;
 import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
-import org.activiti.engine.runtime.Execution;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.activiti.ActivitiConstants;
 import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.integration.activiti.metrics.Instrumentation;
+import org.springframework.integration.activiti.util.AdaptivePollingTrigger;
+import org.springframework.integration.activiti.util.MessageBatcher;
 import org.springframework.integration.config.ConsumerEndpointFactoryBean;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.scheduling.PollerMetadata;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Asynchronous inbound gateway. When the wait state that this gateway provides
  * is reached, the gateway sends a message <em>into</em> Spring Integration
@@ -46,6 +62,38 @@ import org.springframework.util.ClassUtils;
  * The benefit to this is that, from the perspective of the workflow engine, everything happens
  * inside of one transaction. If you're not concerned with having a wait-state execute like a regular state,
  * then ignore that one and prefer this asynchronous gateway.
+ * <p/>
+ * Under heavy load, set {@link #setReplyBatchSize(int) replyBatchSize} to have the replies collected into batches that
+ * are signalled together, in one engine transaction, instead of paying for several transactions per reply.
+ * Set {@link #setReplyConcurrency(int) replyConcurrency} to signal on several threads at once: replies are partitioned by
+ * process instance, so that replies for the same process instance are still signalled one after another, in order, while
+ * replies for different process instances proceed in parallel. Each worker queues at most
+ * {@link #setReplyQueueCapacity(int) replyQueueCapacity} replies; beyond that, the reply endpoint blocks until there's room.
+ * <p/>
+ * The gateway remembers which executions are waiting on a reply, and in which activity (see {@link ExecutionCorrelationRegistry}),
+ * so a second reply for a wait state that's already been signalled is dropped without touching the database. Replies for executions the
+ * gateway doesn't know about (ones that started waiting before a restart, say) are still signalled, unless
+ * {@link #setStrictReplyCorrelation(boolean) strictReplyCorrelation} is set, in which case they're dropped, too.
+ * <p/>
+ * If the reply channel is pollable, the reply endpoint polls it according to the {@link #setPollerMetadata(PollerMetadata) pollerMetadata}
+ * (the nested <code>&lt;poller/&gt;</code> element, in the namespace). When its trigger is an {@link AdaptivePollingTrigger},
+ * the gateway tells it about every reply it receives, so that polling backs off while it's quiet and speeds up under load.
+ * <p/>
+ * Signals that fail because of an optimistic locking collision (two replies for the same process instance, signalled at
+ * once) are retried with a back-off, up to {@link #setSignalRetryAttempts(int) signalRetryAttempts} times (see {@link SignalRetryPolicy}).
+ * A reply that still can't be signalled is sent, as an {@link ErrorMessage} whose headers describe the cause, to the
+ * {@link #setErrorChannel(org.springframework.integration.MessageChannel) errorChannel}, if there is one, and is logged otherwise.
+ * <p/>
+ * When a process is answered by several replies (one per downstream system, say), set a
+ * {@link #setReplyCoalescingWindow(long) replyCoalescingWindow} to have the replies for the same execution merged (see
+ * {@link ReplyCoalescer}) and applied with a single signal, rather than one write per reply and a signal that finds the
+ * execution has already moved on. A reply with a true {@link ActivitiConstants#WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY}
+ * header closes the window early. Merged replies are signalled by the reply workers (there's always at least one when
+ * replies are coalesced), not on the coalescer's timer thread, and fail like any other reply.
+ * <p/>
+ * With an {@link #setInstrumentation(Instrumentation) instrumentation}, the gateway records how many executions it sends,
+ * how many are waiting on a reply, how long they wait, how long mapping, sending and signalling take, and how many replies
+ * couldn't be signalled.
  *
  * @author Josh Long
  * @see ReceiveTaskActivityBehavior the {@link ActivityBehavior} implementation that ships with Activiti that has the machinery to wake up when signaled
@@ -53,35 +101,103 @@ import org.springframework.util.ClassUtils;
  * @see org.activiti.spring.ProcessEngineFactoryBean - use this class to create the aforementioned ProcessEngine instance!
  *
  */
-public class AsyncActivityBehaviorMessagingGateway extends AbstractActivityBehaviorMessagingGateway {
+public class AsyncActivityBehaviorMessagingGateway extends AbstractActivityBehaviorMessagingGateway implements DisposableBean {
 
-    protected MessageHandler replyMessageHandler = new MessageHandler() {
-        private ProcessSupport.ProcessExecutionSignallerCallback processExecutionSignallerCallback =
-                new ProcessSupport.ProcessExecutionSignallerCallback() {
-                    public void setProcessVariable(ProcessEngine en, ActivityExecution ex, String k, Object o) {
-                        en.getRuntimeService().setVariable(ex.getId(), k, o);
-                    }
+    /**
+     * How many replies may be signalled together, in one engine transaction. The default, 1, signals every reply as it arrives.
+     */
+    private volatile int replyBatchSize = 1;
 
-                    public void signal(ProcessEngine en, ActivityExecution ex) {
-                        en.getRuntimeService().signal(ex.getId());
-                    }
-                };
+    /**
+     * How long (in milliseconds) to wait for a batch of replies to fill up before signalling what we have.
+     */
+    private volatile long replyBatchTimeout = 10;
+
+    /**
+     * How many threads signal replies. Replies are partitioned across them by process instance id.
+     */
+    private volatile int replyConcurrency = 1;
+
+    /**
+     * How many replies may wait for each reply worker before the reply endpoint blocks.
+     */
+    private volatile int replyQueueCapacity = MessageBatcher.DEFAULT_CAPACITY;
+
+    private volatile MessageBatcher[] replyWorkers;
+
+    private final ExecutionCorrelationRegistry executionCorrelationRegistry = new ExecutionCorrelationRegistry();
+
+    /**
+     * Should replies for executions this gateway isn't tracking be dropped (instead of being signalled anyway)?
+     */
+    private volatile boolean strictReplyCorrelation;
+
+    private final AtomicLong rejectedReplyCount = new AtomicLong();
+
+    /**
+     * How to poll the reply channel, if it's pollable. By default, it's polled with a receive timeout of 10 milliseconds.
+     */
+    private volatile PollerMetadata pollerMetadata;
+
+    private final SignalRetryPolicy signalRetryPolicy = new SignalRetryPolicy();
+
+    /**
+     * How long (in milliseconds) to collect the replies for an execution before they're merged and signalled. Zero, the
+     * default, signals every reply as it arrives.
+     */
+    private volatile long replyCoalescingWindow = 0;
 
+    private volatile ReplyCoalescer replyCoalescer;
+
+    /**
+     * the endpoint that consumes the reply channel. It's stopped first on the way down, so no reply is taken off the
+     * channel once the workers can't accept it
+     */
+    private volatile ConsumerEndpointFactoryBean replyEndpoint;
+
+    protected MessageHandler dispatchingReplyMessageHandler = new MessageHandler() {
         public void handleMessage(Message<?> message) throws MessagingException {
-            String executionId =
-                    (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY);
+            ExecutionCorrelationRegistry.Claim claim = acceptReply(message);
+            if (claim == null) {
+                return;
+            }
+            MessageBatcher[] workers = replyWorkers;
+            try {
+                workers[partitionFor(message, workers.length)].add(new ClaimedReply(message, claim));
+            } catch (RuntimeException e) {
+                releaseExecution(message, claim);
+                throw e;
+            }
+        }
+    };
 
-            Assert.notNull(executionId, "the messages coming into this channel must have a header equal "
-                                                + "to the value of ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY ("
-                                                + ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY + ")");
+    protected MessageHandler replyMessageHandler = new MessageHandler() {
+        private ProcessSupport.BulkProcessExecutionSignallerCallback processExecutionSignallerCallback =
+                new CommandProcessExecutionSignallerCallback(signalRetryPolicy);
 
-            Execution execution = processEngine.getRuntimeService().createExecutionQuery().executionId(executionId).singleResult();
-            ActivityExecution activityExecution = (ActivityExecution) execution;
+        public void handleMessage(Message<?> message) throws MessagingException {
+            String executionId = getExecutionId(message);
 
+            ExecutionCorrelationRegistry.Claim claim = acceptReply(message);
+            if (claim == null) {
+                return;
+            }
+
+            Instrumentation instrumentation = AsyncActivityBehaviorMessagingGateway.this.instrumentation;
+            boolean timed = instrumentation.isEnabled();
+            long start = timed ? System.nanoTime() : 0;
             try {
-                ProcessSupport.signalProcessExecution(processEngine, activityExecution,
+                ProcessSupport.signalProcessExecution(processEngine, executionId,
                                                              processExecutionSignallerCallback, headerMapper, message);
+                if (timed) {
+                    instrumentation.recordEngineTime(System.nanoTime() - start);
+                }
             } catch (Exception e) {
+                releaseExecution(message, claim);
+                instrumentation.recordError();
+                if (sendSignalFailure(message, e)) {
+                    return;
+                }
                 log.error(e);
 
                 throw new RuntimeException(e);
@@ -89,27 +205,376 @@ public class AsyncActivityBehaviorMessagingGateway extends AbstractActivityBehav
         }
     };
 
+    /**
+     * Sets all of the process variables and signals the execution in one engine {@link org.activiti.engine.impl.interceptor.Command},
+     * which costs one transaction no matter how many process variables the reply carries. The execution is fetched by its id
+     * inside that same command, so there's no separate query beforehand.
+     */
+    static class CommandProcessExecutionSignallerCallback implements ProcessSupport.BulkProcessExecutionSignallerCallback {
+        private final SignalRetryPolicy signalRetryPolicy;
+
+        CommandProcessExecutionSignallerCallback() {
+            this(null);
+        }
+
+        /**
+         * @param signalRetryPolicy retries the signal on optimistic locking collisions. May be null, for no retries.
+         */
+        CommandProcessExecutionSignallerCallback(SignalRetryPolicy signalRetryPolicy) {
+            this.signalRetryPolicy = signalRetryPolicy;
+        }
+
+        public void setProcessVariablesAndSignal(ProcessEngine en, String executionId, Map<String, Object> processVariables) {
+            ExecutionSignal executionSignal = new ExecutionSignal(executionId, processVariables);
+            SignalExecutionsCommand command = new SignalExecutionsCommand(Collections.singletonList(executionSignal));
+            if (this.signalRetryPolicy == null) {
+                ProcessSupport.executeCommand(en, command);
+            } else {
+                this.signalRetryPolicy.execute(en, command);
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public void setReplyBatchSize(int replyBatchSize) {
+        this.replyBatchSize = replyBatchSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setReplyBatchTimeout(long replyBatchTimeout) {
+        this.replyBatchTimeout = replyBatchTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setReplyConcurrency(int replyConcurrency) {
+        this.replyConcurrency = replyConcurrency;
+    }
+
+    /**
+     * how many replies may wait for each reply worker. When a worker's queue is full, the reply endpoint blocks until
+     * there's room, which slows the consumption of replies down to the rate at which they can be signalled.
+     * Defaults to {@link MessageBatcher#DEFAULT_CAPACITY}.
+     *
+     * @param replyQueueCapacity the capacity of each reply worker's queue
+     */
+    @SuppressWarnings("unused")
+    public void setReplyQueueCapacity(int replyQueueCapacity) {
+        this.replyQueueCapacity = replyQueueCapacity;
+    }
+
+    /**
+     * how many times to try signalling a reply when it collides with another one, counting the first try. Defaults to 4.
+     *
+     * @param signalRetryAttempts the maximum number of attempts
+     */
+    @SuppressWarnings("unused")
+    public void setSignalRetryAttempts(int signalRetryAttempts) {
+        this.signalRetryPolicy.setMaxAttempts(signalRetryAttempts);
+    }
+
+    /**
+     * how long, in milliseconds, to wait before the first retry. Every further retry waits twice as long. Defaults to 10.
+     *
+     * @param signalRetryBackOff the initial back-off
+     */
+    @SuppressWarnings("unused")
+    public void setSignalRetryBackOff(long signalRetryBackOff) {
+        this.signalRetryPolicy.setInitialBackOff(signalRetryBackOff);
+    }
+
+    /**
+     * the longest, in milliseconds, to wait before a retry, however many retries there have been. Defaults to 1000.
+     *
+     * @param signalRetryMaxBackOff the maximum back-off
+     */
+    @SuppressWarnings("unused")
+    public void setSignalRetryMaxBackOff(long signalRetryMaxBackOff) {
+        this.signalRetryPolicy.setMaxBackOff(signalRetryMaxBackOff);
+    }
+
+    @SuppressWarnings("unused")
+    public void setReplyCoalescingWindow(long replyCoalescingWindow) {
+        this.replyCoalescingWindow = replyCoalescingWindow;
+    }
+
+    @SuppressWarnings("unused")
+    public void setPollerMetadata(PollerMetadata pollerMetadata) {
+        this.pollerMetadata = pollerMetadata;
+    }
+
+    @SuppressWarnings("unused")
+    public void setStrictReplyCorrelation(boolean strictReplyCorrelation) {
+        this.strictReplyCorrelation = strictReplyCorrelation;
+    }
+
+    /**
+     * @return the number of executions waiting on a reply from this gateway
+     */
+    public int getOutstandingExecutionCount() {
+        return this.executionCorrelationRegistry.size();
+    }
+
+    /**
+     * @return the number of signals that collided with another one (an optimistic locking failure), whether they were retried or not
+     */
+    public long getSignalCollisionCount() {
+        return this.signalRetryPolicy.getCollisionCount();
+    }
+
+    /**
+     * @return the number of replies dropped because they were duplicates, or, in strict mode, for unknown executions
+     */
+    public long getRejectedReplyCount() {
+        return this.rejectedReplyCount.get();
+    }
+
+    /**
+     * claims the reply's execution. Duplicate replies (and, in strict mode, replies for unknown executions) are dropped.
+     *
+     * @return how the reply's execution was claimed, or null if the reply was dropped
+     */
+    private ExecutionCorrelationRegistry.Claim acceptReply(Message<?> reply) {
+        String executionId = getExecutionId(reply);
+        Instrumentation instrumentation = this.instrumentation;
+        long sendTime = instrumentation.isEnabled() ? this.executionCorrelationRegistry.getSendTime(executionId) : -1;
+        ExecutionCorrelationRegistry.Claim claim = this.executionCorrelationRegistry.claim(executionId, getActivityId(reply));
+
+        if (claim == ExecutionCorrelationRegistry.Claim.CLAIMED) {
+            instrumentation.decrementInFlight();
+            if (sendTime != -1) {
+                instrumentation.recordDwellTime(System.nanoTime() - sendTime);
+            }
+            return claim;
+        }
+        if (claim == ExecutionCorrelationRegistry.Claim.UNKNOWN && !this.strictReplyCorrelation) {
+            return claim;
+        }
+
+        this.rejectedReplyCount.incrementAndGet();
+        log.warn("dropping reply message " + reply.getHeaders().getId() + ": execution " + executionId +
+                         (claim == ExecutionCorrelationRegistry.Claim.DUPLICATE ? " has already been signalled" : " isn't waiting on a reply"));
+        return null;
+    }
+
+    /**
+     * Picks the reply worker for a message. Replies for the same process instance always land on the same worker, which
+     * keeps them in order and avoids optimistic locking collisions between them.
+     */
+    private int partitionFor(Message<?> message, int partitions) {
+        if (partitions == 1) {
+            return 0;
+        }
+        Object key = message.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY);
+        if (key == null) {
+            key = getExecutionId(message);
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    private String getExecutionId(Message<?> message) {
+        String executionId = (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY);
+
+        Assert.notNull(executionId, "the messages coming into this channel must have a header equal "
+                                            + "to the value of ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY ("
+                                            + ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY + ")");
+        return executionId;
+    }
+
+    private static String getActivityId(Message<?> message) {
+        return (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_ACTIVITY_ID_HEADER_KEY);
+    }
+
+    private ExecutionSignal buildExecutionSignal(Message<?> reply) {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        headerMapper.fromHeaders(reply.getHeaders(), vars);
+        return new ExecutionSignal(getExecutionId(reply), vars);
+    }
+
+    /**
+     * Signals the executions for all of the replies in one engine transaction. If that fails, each reply is retried in its
+     * own transaction, so that one bad reply can't hold up the rest, and every reply that still fails is reported on its own.
+     * The executions of the replies that claimed them are released again if they can't be signalled.
+     *
+     * @param replies the reply messages, in the order in which they arrived
+     */
+    protected void signalReplies(List<Message<?>> replies) {
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        List<Message<?>> accepted = new ArrayList<Message<?>>(replies.size());
+        List<ExecutionCorrelationRegistry.Claim> claims = new ArrayList<ExecutionCorrelationRegistry.Claim>(replies.size());
+        List<ExecutionSignal> executionSignals = new ArrayList<ExecutionSignal>(replies.size());
+
+        for (Message<?> message : replies) {
+            Message<?> reply = message;
+            ExecutionCorrelationRegistry.Claim claim = null;
+            if (message instanceof ClaimedReply) {
+                reply = ((ClaimedReply) message).reply;
+                claim = ((ClaimedReply) message).claim;
+            }
+            try {
+                executionSignals.add(buildExecutionSignal(reply));
+                accepted.add(reply);
+                claims.add(claim);
+            } catch (Exception e) {
+                releaseExecution(reply, claim);
+                handleSignalFailure(reply, e);
+            }
+        }
+
+        if (executionSignals.isEmpty()) {
+            return;
+        }
+
+        if (timed) {
+            long mapped = System.nanoTime();
+            instrumentation.recordMappingTime(mapped - start);
+            start = mapped;
+        }
+
+        try {
+            ProcessSupport.executeCommand(processEngine, new SignalExecutionsCommand(executionSignals));
+            if (timed) {
+                instrumentation.recordEngineTime(System.nanoTime() - start);
+            }
+        } catch (Exception batchException) {
+            if (executionSignals.size() == 1) {
+                // a lone reply gets the same retries it would get outside of a batch
+                try {
+                    this.signalRetryPolicy.execute(processEngine, new SignalExecutionsCommand(executionSignals));
+                } catch (Exception e) {
+                    releaseExecution(accepted.get(0), claims.get(0));
+                    handleSignalFailure(accepted.get(0), e);
+                }
+                return;
+            }
+
+            log.warn("couldn't signal a batch of " + executionSignals.size() + " replies; signalling each reply on its own", batchException);
+
+            for (int i = 0; i < executionSignals.size(); i++) {
+                try {
+                    this.signalRetryPolicy.execute(processEngine, new SignalExecutionsCommand(Collections.singletonList(executionSignals.get(i))));
+                } catch (Exception e) {
+                    releaseExecution(accepted.get(i), claims.get(i));
+                    handleSignalFailure(accepted.get(i), e);
+                }
+            }
+        }
+    }
+
+    private void handleSignalFailure(Message<?> reply, Exception cause) {
+        this.instrumentation.recordError();
+        if (!sendSignalFailure(reply, cause)) {
+            log.error("couldn't signal the execution for reply message " + reply.getHeaders().getId(), cause);
+        }
+    }
+
+    /**
+     * sends the failed reply, wrapped in an {@link ErrorMessage}, to the error channel
+     *
+     * @return false if there's no error channel, or the error message couldn't be sent
+     */
+    private boolean sendSignalFailure(Message<?> reply, Exception cause) {
+        return sendErrorMessage(reply, "couldn't signal the execution for reply message " + reply.getHeaders().getId(), cause);
+    }
+
+    /**
+     * the execution couldn't be signalled, so it's waiting on a reply again. Only a reply that claimed the execution may
+     * release it: an execution that was never tracked stays that way.
+     */
+    private void releaseExecution(Message<?> reply, ExecutionCorrelationRegistry.Claim claim) {
+        String executionId = (String) reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY);
+        if (claim == ExecutionCorrelationRegistry.Claim.CLAIMED && executionId != null) {
+            this.executionCorrelationRegistry.release(executionId, getActivityId(reply));
+            this.instrumentation.incrementInFlight();
+        }
+    }
+
     @Override
     protected void onExecute(ActivityExecution execution) throws Exception {
+        final Instrumentation instrumentation = this.instrumentation;
+        instrumentation.recordRequest();
+
         MessageBuilder<?> messageBuilder = this.doBasicOutboundMessageConstruction(execution);
 
         messageBuilder.setReplyChannel(this.replyChannel);
-        this.messagingTemplate.send(this.requestChannel, messageBuilder.build());
+
+        // registered before the send, as a quick reply may well beat the commit, and forgotten again if the wait state never commits
+        final String executionId = execution.getId();
+        final String activityId = execution.getActivity().getId();
+        if (this.executionCorrelationRegistry.register(executionId, activityId)) {
+            instrumentation.incrementInFlight();
+        }
+        int forgotten = this.executionCorrelationRegistry.trim();
+        for (int i = 0; i < forgotten; i++) {
+            instrumentation.decrementInFlight();
+        }
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            this.messagingTemplate.send(this.requestChannel, messageBuilder.build());
+        } catch (Exception e) {
+            if (this.executionCorrelationRegistry.unregister(executionId, activityId)) {
+                instrumentation.decrementInFlight();
+            }
+            instrumentation.recordError();
+            throw e;
+        }
+        if (timed) {
+            instrumentation.recordSendTime(System.nanoTime() - start);
+        }
+
+        CommandContext commandContext = Context.getCommandContext();
+        if (commandContext != null) {
+            commandContext.getTransactionContext().addTransactionListener(TransactionState.ROLLED_BACK, new TransactionListener() {
+                public void execute(CommandContext commandContext) {
+                    if (executionCorrelationRegistry.unregister(executionId, activityId)) {
+                        instrumentation.decrementInFlight();
+                    }
+                }
+            });
+        }
     }
 
     @Override
     protected void onInit() throws Exception {
         ConsumerEndpointFactoryBean consumerEndpointFactoryBean = new ConsumerEndpointFactoryBean();
 
-        consumerEndpointFactoryBean.setHandler(replyMessageHandler);
+        Assert.isTrue(this.replyConcurrency > 0, "the 'replyConcurrency' must be greater than zero");
+
+        // coalesced replies are handed to a worker, so that the coalescer's one timer thread never signals them itself
+        if (this.replyBatchSize > 1 || this.replyConcurrency > 1 || this.replyCoalescingWindow > 0) {
+            MessageBatcher.BatchHandler batchHandler = new MessageBatcher.BatchHandler() {
+                public void handleBatch(List<Message<?>> messages) {
+                    signalReplies(messages);
+                }
+            };
+            MessageBatcher[] workers = new MessageBatcher[this.replyConcurrency];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new MessageBatcher(batchHandler);
+                workers[i].setBatchSize(this.replyBatchSize);
+                workers[i].setBatchTimeout(this.replyBatchTimeout);
+                workers[i].setCapacity(this.replyQueueCapacity);
+                workers[i].setName(this.beanName + "ReplyWorker" + i);
+                workers[i].afterPropertiesSet();
+            }
+            this.replyWorkers = workers;
+            consumerEndpointFactoryBean.setHandler(triggerNotifyingHandler(coalescingHandler(dispatchingReplyMessageHandler)));
+        } else {
+            consumerEndpointFactoryBean.setHandler(triggerNotifyingHandler(coalescingHandler(replyMessageHandler)));
+        }
         consumerEndpointFactoryBean.setBeanClassLoader(ClassUtils.getDefaultClassLoader());
         consumerEndpointFactoryBean.setAutoStartup(false);
         consumerEndpointFactoryBean.setInputChannel(this.replyChannel);
 
         if (this.replyChannel instanceof PollableChannel) {
-            PollerMetadata pollerMetadata = new PollerMetadata();
+            PollerMetadata pollerMetadata = this.pollerMetadata;
 
-            pollerMetadata.setReceiveTimeout(10);
+            if (pollerMetadata == null) {
+                pollerMetadata = new PollerMetadata();
+                pollerMetadata.setReceiveTimeout(10);
+            }
             consumerEndpointFactoryBean.setPollerMetadata(pollerMetadata);
         }
 
@@ -117,7 +582,89 @@ public class AsyncActivityBehaviorMessagingGateway extends AbstractActivityBehav
         consumerEndpointFactoryBean.setBeanName(this.beanName + "ConsumerEndpoint");
         consumerEndpointFactoryBean.afterPropertiesSet();
         consumerEndpointFactoryBean.start();
+        this.replyEndpoint = consumerEndpointFactoryBean;
     }
-}
 
+    /**
+     * merges the replies for an execution before they reach the handler, if there's a coalescing window. The execution is
+     * only claimed once the merged reply reaches the handler, so the partial replies aren't mistaken for duplicates. A merged
+     * reply that can't be handed off is reported like a reply that couldn't be signalled.
+     */
+    private MessageHandler coalescingHandler(final MessageHandler handler) throws Exception {
+        if (this.replyCoalescingWindow <= 0) {
+            return handler;
+        }
+        ReplyCoalescer coalescer = new ReplyCoalescer(new ReplyCoalescer.CoalescedReplyHandler() {
+            public void handleCoalescedReply(Message<?> reply) {
+                try {
+                    handler.handleMessage(reply);
+                } catch (RuntimeException e) {
+                    handleSignalFailure(reply, e);
+                }
+            }
+        });
+        coalescer.setWindow(this.replyCoalescingWindow);
+        coalescer.setName(this.beanName + "ReplyCoalescer");
+        coalescer.afterPropertiesSet();
+        this.replyCoalescer = coalescer;
 
+        return new MessageHandler() {
+            public void handleMessage(Message<?> message) throws MessagingException {
+                replyCoalescer.add(message);
+            }
+        };
+    }
+
+    /**
+     * lets an {@link AdaptivePollingTrigger} know whenever a reply has been received
+     */
+    private MessageHandler triggerNotifyingHandler(final MessageHandler handler) {
+        if (this.pollerMetadata == null || !(this.pollerMetadata.getTrigger() instanceof AdaptivePollingTrigger)) {
+            return handler;
+        }
+        final AdaptivePollingTrigger trigger = (AdaptivePollingTrigger) this.pollerMetadata.getTrigger();
+        return new MessageHandler() {
+            public void handleMessage(Message<?> message) throws MessagingException {
+                trigger.messageReceived();
+                handler.handleMessage(message);
+            }
+        };
+    }
+
+    /**
+     * a reply on its way to a reply worker, along with how it claimed its execution
+     */
+    private static class ClaimedReply implements Message<Object> {
+
+        private final Message<?> reply;
+
+        private final ExecutionCorrelationRegistry.Claim claim;
+
+        private ClaimedReply(Message<?> reply, ExecutionCorrelationRegistry.Claim claim) {
+            this.reply = reply;
+            this.claim = claim;
+        }
+
+        public MessageHeaders getHeaders() {
+            return this.reply.getHeaders();
+        }
+
+        public Object getPayload() {
+            return this.reply.getPayload();
+        }
+    }
+
+    public void destroy() throws Exception {
+        if (this.replyEndpoint != null) {
+            this.replyEndpoint.stop(); // stops taking replies, so it goes before everything that handles them
+        }
+        if (this.replyCoalescer != null) {
+            this.replyCoalescer.destroy(); // hands what's pending to the workers, so it goes before them
+        }
+        if (this.replyWorkers != null) {
+            for (MessageBatcher worker : this.replyWorkers) {
+                worker.destroy();
+            }
+        }
+    }
+}
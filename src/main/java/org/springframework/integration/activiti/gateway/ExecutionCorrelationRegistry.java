@@ -0,0 +1,222 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.integration.activiti.util.RecentKeyIndex;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps track of the executions that are waiting on a reply, so that a reply can be matched to its execution (or found
+ * to be stale) without asking the database. A reply {@link #claim(String, String) claims} its execution, and every later
+ * reply for the same execution is a {@link Claim#DUPLICATE duplicate}, for as long as the claim is remembered.
+ * <p/>
+ * An execution may wait on several gateways, one after another, so a wait state is identified by the execution id and
+ * the id of the activity it's waiting in. That way a late duplicate for the first wait state isn't taken for the reply
+ * to the second. Replies that don't carry the activity id (under
+ * {@link org.springframework.integration.activiti.ActivitiConstants#WELL_KNOWN_ACTIVITY_ID_HEADER_KEY}) are matched
+ * on the execution id alone, and can't be told apart from such duplicates.
+ * <p/>
+ * At most {@code outstandingExecutionsSize} executions are tracked. When there are more, the ones that have been waiting
+ * longer than {@code outstandingExecutionsRetention} milliseconds (and then as many others as needed) are forgotten, and
+ * their replies are {@link Claim#UNKNOWN unknown}.
+ *
+ * @author Josh Long
+ */
+public class ExecutionCorrelationRegistry {
+
+    public static enum Claim {
+        /**
+         * the execution was waiting for this reply
+         */
+        CLAIMED,
+        /**
+         * the execution has already been claimed by an earlier reply
+         */
+        DUPLICATE,
+        /**
+         * the execution isn't known here. It may have been started before this registry existed (say, before a restart).
+         */
+        UNKNOWN
+    }
+
+    /**
+     * execution id to the wait state it's in
+     */
+    private final ConcurrentMap<String, WaitState> outstandingExecutions = new ConcurrentHashMap<String, WaitState>();
+
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    private final int outstandingExecutionsSize;
+
+    private final long outstandingExecutionsRetention;
+
+    private final RecentKeyIndex claimedExecutions;
+
+    public ExecutionCorrelationRegistry() {
+        this(100000, 24 * 60 * 60 * 1000, 10000, 10 * 60 * 1000);
+    }
+
+    /**
+     * @param outstandingExecutionsSize      the most executions to track while they wait on a reply
+     * @param outstandingExecutionsRetention how long, in milliseconds, an execution may wait before it's among the first
+     *                                       to be forgotten when there are too many
+     * @param claimedExecutionsSize          the most claimed executions to remember, for the sake of spotting duplicates
+     * @param claimedExecutionsRetention     how long, in milliseconds, to remember a claimed execution
+     */
+    public ExecutionCorrelationRegistry(int outstandingExecutionsSize, long outstandingExecutionsRetention,
+                                        int claimedExecutionsSize, long claimedExecutionsRetention) {
+        Assert.isTrue(outstandingExecutionsSize > 0, "the 'outstandingExecutionsSize' must be greater than zero");
+        Assert.isTrue(outstandingExecutionsRetention > 0, "the 'outstandingExecutionsRetention' must be greater than zero");
+        this.outstandingExecutionsSize = outstandingExecutionsSize;
+        this.outstandingExecutionsRetention = TimeUnit.MILLISECONDS.toNanos(outstandingExecutionsRetention);
+        this.claimedExecutions = new RecentKeyIndex(claimedExecutionsSize, claimedExecutionsRetention);
+    }
+
+    /**
+     * tracks an execution until it's claimed. Call {@link #trim()} afterwards, to keep the number of executions bounded.
+     *
+     * @param executionId the execution id
+     * @param activityId  the activity the execution is waiting in
+     * @return true if the execution wasn't already being tracked
+     */
+    public boolean register(String executionId, String activityId) {
+        return this.outstandingExecutions.put(executionId, new WaitState(activityId, System.nanoTime())) == null;
+    }
+
+    /**
+     * forgets executions, if there are more than {@code outstandingExecutionsSize} of them
+     *
+     * @return the number of executions that were forgotten
+     */
+    public int trim() {
+        return this.outstandingExecutions.size() > this.outstandingExecutionsSize ? trim(System.nanoTime()) : 0;
+    }
+
+    /**
+     * forgets an execution whose request never made it (the send failed, or the transaction rolled back)
+     *
+     * @param executionId the execution id
+     * @param activityId  the activity the execution was to wait in
+     * @return true if the execution was still waiting on a reply
+     */
+    public boolean unregister(String executionId, String activityId) {
+        WaitState waitState = this.outstandingExecutions.get(executionId);
+        return waitState != null && waitState.matches(activityId) && this.outstandingExecutions.remove(executionId, waitState);
+    }
+
+    /**
+     * @param executionId the execution id
+     * @return the {@link System#nanoTime()} at which the execution's request was sent, or -1 if it isn't waiting on a reply
+     */
+    public long getSendTime(String executionId) {
+        WaitState waitState = this.outstandingExecutions.get(executionId);
+        return waitState == null ? -1 : waitState.sendTime;
+    }
+
+    /**
+     * @param executionId the execution id
+     * @param activityId  the activity the reply is for. May be null, if the reply doesn't say.
+     * @return whether the reply claimed the execution
+     */
+    public Claim claim(String executionId, String activityId) {
+        WaitState waitState = this.outstandingExecutions.get(executionId);
+        if (waitState != null && waitState.matches(activityId) && this.outstandingExecutions.remove(executionId, waitState)) {
+            this.claimedExecutions.add(key(executionId, activityId));
+            return Claim.CLAIMED;
+        }
+        return this.claimedExecutions.contains(key(executionId, activityId)) ? Claim.DUPLICATE : Claim.UNKNOWN;
+    }
+
+    /**
+     * hands a {@link Claim#CLAIMED claimed} execution back, so that another reply (a redelivery, say) may claim it, because
+     * signalling it failed. Only executions that this reply claimed may be released.
+     *
+     * @param executionId the execution id
+     * @param activityId  the activity id the claiming reply carried
+     */
+    public void release(String executionId, String activityId) {
+        this.claimedExecutions.remove(key(executionId, activityId));
+        this.outstandingExecutions.put(executionId, new WaitState(activityId, System.nanoTime()));
+    }
+
+    /**
+     * @return the number of executions waiting on a reply
+     */
+    public int size() {
+        return this.outstandingExecutions.size();
+    }
+
+    private static String key(String executionId, String activityId) {
+        return activityId == null ? executionId : executionId + '\u0000' + activityId;
+    }
+
+    /**
+     * forgets the executions that have waited too long and, if that's not enough, arbitrary others, until a tenth of the
+     * room is free again
+     *
+     * @return the number of executions forgotten
+     */
+    private int trim(long now) {
+        if (!this.trimming.compareAndSet(false, true)) {
+            return 0;
+        }
+        int forgotten = 0;
+        try {
+            int target = this.outstandingExecutionsSize - Math.max(1, this.outstandingExecutionsSize / 10);
+
+            // removed by key and value, so an execution that's claimed meanwhile isn't counted
+            for (Map.Entry<String, WaitState> entry : this.outstandingExecutions.entrySet()) {
+                if (now - entry.getValue().sendTime > this.outstandingExecutionsRetention &&
+                            this.outstandingExecutions.remove(entry.getKey(), entry.getValue())) {
+                    forgotten++;
+                }
+            }
+
+            for (Iterator<Map.Entry<String, WaitState>> it = this.outstandingExecutions.entrySet().iterator(); it.hasNext() && this.outstandingExecutions.size() > target; ) {
+                Map.Entry<String, WaitState> entry = it.next();
+                if (this.outstandingExecutions.remove(entry.getKey(), entry.getValue())) {
+                    forgotten++;
+                }
+            }
+        } finally {
+            this.trimming.set(false);
+        }
+        return forgotten;
+    }
+
+    private static class WaitState {
+
+        private final String activityId;
+
+        private final long sendTime;
+
+        private WaitState(String activityId, long sendTime) {
+            this.activityId = activityId;
+            this.sendTime = sendTime;
+        }
+
+        /**
+         * a reply that doesn't say which activity it's for matches any
+         */
+        private boolean matches(String activityId) {
+            return activityId == null || this.activityId == null || this.activityId.equals(activityId);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+
+import java.util.Map;
+
+/**
+ * Decides what the payload of a gateway's request message is.
+ *
+ * @author Josh Long
+ * @see ExecutionSnapshotPayloadStrategy the default
+ * @see LiveExecutionPayloadStrategy
+ */
+public interface ExecutionPayloadStrategy {
+
+    /**
+     * @param execution the execution that reached the gateway
+     * @param variables the process variables selected for the request (the same ones that are mapped to headers)
+     * @return the payload. Never null.
+     */
+    Object createPayload(ActivityExecution execution, Map<String, Object> variables);
+}
@@ -0,0 +1,50 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.util.Assert;
+
+import java.util.Map;
+
+/**
+ * Describes one pending signal: the id of the waiting {@link org.activiti.engine.runtime.Execution}
+ * and the process variables that should be set on it before it is signalled.
+ *
+ * @author Josh Long
+ */
+public class ExecutionSignal {
+
+    private final String executionId;
+
+    private final Map<String, Object> processVariables;
+
+    public ExecutionSignal(String executionId, Map<String, Object> processVariables) {
+        Assert.notNull(executionId, "the 'executionId' can't be null");
+        Assert.notNull(processVariables, "the 'processVariables' can't be null");
+        this.executionId = executionId;
+        this.processVariables = processVariables;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public Map<String, Object> getProcessVariables() {
+        return processVariables;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionSignal[executionId=" + this.executionId + ", processVariables=" + this.processVariables.keySet() + "]";
+    }
+}
@@ -0,0 +1,87 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.impl.pvm.PvmActivity;
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable copy of what a gateway's request needs from an {@link ActivityExecution}: its ids, the id of the activity
+ * it's waiting in, and the process variables selected for the request. Unlike the execution itself, it doesn't hold on to
+ * the engine, so it can be handed to another thread, or serialized (as long as the variables are serializable) and sent
+ * to another JVM.
+ *
+ * @author Josh Long
+ * @see ExecutionSnapshotPayloadStrategy
+ */
+public class ExecutionSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String executionId;
+
+    private final String processInstanceId;
+
+    private final String activityId;
+
+    private final Map<String, Object> variables;
+
+    public ExecutionSnapshot(String executionId, String processInstanceId, String activityId, Map<String, Object> variables) {
+        this.executionId = executionId;
+        this.processInstanceId = processInstanceId;
+        this.activityId = activityId;
+        this.variables = variables == null || variables.isEmpty() ?
+                                 Collections.<String, Object>emptyMap() :
+                                 Collections.unmodifiableMap(new HashMap<String, Object>(variables));
+    }
+
+    /**
+     * @param execution the execution
+     * @param variables the process variables to keep. They're copied.
+     * @return a snapshot of the execution
+     */
+    public static ExecutionSnapshot of(ActivityExecution execution, Map<String, Object> variables) {
+        PvmActivity activity = execution.getActivity();
+        return new ExecutionSnapshot(execution.getId(), execution.getProcessInstanceId(), activity == null ? null : activity.getId(), variables);
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public String getActivityId() {
+        return activityId;
+    }
+
+    /**
+     * @return the selected process variables. The map can't be modified.
+     */
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionSnapshot[executionId=" + executionId + ", processInstanceId=" + processInstanceId +
+                       ", activityId=" + activityId + ", variables=" + variables.keySet() + "]";
+    }
+}
@@ -0,0 +1,29 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+
+import java.util.Map;
+
+/**
+ * Sends an {@link ExecutionSnapshot} of the execution, which is safe to hand to other threads and to serialize. This is the default.
+ *
+ * @author Josh Long
+ */
+public class ExecutionSnapshotPayloadStrategy implements ExecutionPayloadStrategy {
+
+    public Object createPayload(ActivityExecution execution, Map<String, Object> variables) {
+        return ExecutionSnapshot.of(execution, variables);
+    }
+}
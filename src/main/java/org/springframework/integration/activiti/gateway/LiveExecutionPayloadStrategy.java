@@ -0,0 +1,31 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+
+import java.util.Map;
+
+/**
+ * Sends the {@link ActivityExecution} itself, the way the gateways used to. The execution belongs to the engine's current
+ * command, so it should only be used on the engine's thread, before the gateway returns (with the synchronous gateway and
+ * direct channels, say), and it can't be serialized.
+ *
+ * @author Josh Long
+ */
+public class LiveExecutionPayloadStrategy implements ExecutionPayloadStrategy {
+
+    public Object createPayload(ActivityExecution execution, Map<String, Object> variables) {
+        return execution;
+    }
+}
@@ -0,0 +1,204 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the replies for the same execution (by {@link ActivitiConstants#WELL_KNOWN_EXECUTION_ID_HEADER_KEY}) into one.
+ * The first reply for an execution opens a window of {@link #setWindow(long) window} milliseconds. Every reply that arrives
+ * within it is merged in (the headers of later replies win, and the payload of the last reply is kept), and the merged
+ * reply is handed to the {@link CoalescedReplyHandler} when the window closes, or as soon as a reply with a true
+ * {@link ActivitiConstants#WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY} header arrives.
+ *
+ * @author Josh Long
+ */
+public class ReplyCoalescer implements InitializingBean, DisposableBean {
+
+    private Log log = LogFactory.getLog(getClass());
+
+    private final CoalescedReplyHandler coalescedReplyHandler;
+
+    private long window = 100;
+
+    private String name = "replyCoalescer";
+
+    private final ConcurrentMap<String, PendingReply> pendingReplies = new ConcurrentHashMap<String, PendingReply>();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public ReplyCoalescer(CoalescedReplyHandler coalescedReplyHandler) {
+        Assert.notNull(coalescedReplyHandler, "the 'coalescedReplyHandler' can't be null");
+        this.coalescedReplyHandler = coalescedReplyHandler;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the number of executions with replies waiting to be merged
+     */
+    public int getPendingCount() {
+        return this.pendingReplies.size();
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        Assert.isTrue(this.window > 0, "the 'window' must be greater than zero");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(this.name + "-"));
+    }
+
+    public void add(Message<?> reply) {
+        final String executionId = (String) reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY);
+        Assert.notNull(executionId, "the reply must have a '" + ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY + "' header");
+
+        boolean complete = isComplete(reply);
+
+        while (true) {
+            PendingReply pendingReply = this.pendingReplies.get(executionId);
+            if (pendingReply == null) {
+                if (complete) {
+                    // nothing to merge with, and nothing to wait for
+                    handle(reply);
+                    return;
+                }
+                final PendingReply newPendingReply = new PendingReply();
+                pendingReply = this.pendingReplies.putIfAbsent(executionId, newPendingReply);
+                if (pendingReply == null) {
+                    pendingReply = newPendingReply;
+                    this.scheduler.schedule(new Runnable() {
+                        public void run() {
+                            flush(executionId, newPendingReply);
+                        }
+                    }, this.window, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            Message<?> merged;
+            synchronized (pendingReply) {
+                if (pendingReply.flushed) {
+                    continue; // lost the race against the window closing; start over
+                }
+                pendingReply.merge(reply);
+                if (!complete) {
+                    return;
+                }
+                pendingReply.flushed = true;
+                merged = pendingReply.build();
+            }
+            this.pendingReplies.remove(executionId, pendingReply);
+            handle(merged);
+            return;
+        }
+    }
+
+    /**
+     * hands off every reply that's still waiting, and stops the window timer
+     */
+    public void destroy() throws Exception {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+        for (String executionId : new ArrayList<String>(this.pendingReplies.keySet())) {
+            PendingReply pendingReply = this.pendingReplies.get(executionId);
+            if (pendingReply != null) {
+                flush(executionId, pendingReply);
+            }
+        }
+    }
+
+    private void flush(String executionId, PendingReply pendingReply) {
+        Message<?> merged;
+        synchronized (pendingReply) {
+            if (pendingReply.flushed) {
+                return;
+            }
+            pendingReply.flushed = true;
+            merged = pendingReply.build();
+        }
+        this.pendingReplies.remove(executionId, pendingReply);
+        handle(merged);
+    }
+
+    private void handle(Message<?> reply) {
+        try {
+            this.coalescedReplyHandler.handleCoalescedReply(reply);
+        } catch (Throwable t) {
+            log.error("exception thrown when handling the merged reply for execution " +
+                              reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY) + " in '" + this.name + "'", t);
+        }
+    }
+
+    private static boolean isComplete(Message<?> reply) {
+        Object complete = reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY);
+        return complete != null && Boolean.valueOf(complete.toString());
+    }
+
+    /**
+     * the replies merged so far for one execution. Guarded by its own monitor.
+     */
+    private static class PendingReply {
+
+        private final Map<String, Object> headers = new HashMap<String, Object>();
+
+        private Object payload;
+
+        private boolean flushed;
+
+        void merge(Message<?> reply) {
+            for (Map.Entry<String, Object> header : reply.getHeaders().entrySet()) {
+                String name = header.getKey();
+                if (!MessageHeaders.ID.equals(name) && !MessageHeaders.TIMESTAMP.equals(name)) {
+                    this.headers.put(name, header.getValue());
+                }
+            }
+            this.payload = reply.getPayload();
+        }
+
+        Message<?> build() {
+            return MessageBuilder.withPayload(this.payload).copyHeaders(this.headers).build();
+        }
+    }
+
+    /**
+     * called with each merged reply, either on the thread that added the completing reply, or on the window timer's thread.
+     * There's only the one timer thread, so handlers should hand the reply off rather than do slow work on it, and deal with
+     * their own failures: anything thrown here is just logged.
+     */
+    public static interface CoalescedReplyHandler {
+        void handleCoalescedReply(Message<?> reply);
+    }
+}
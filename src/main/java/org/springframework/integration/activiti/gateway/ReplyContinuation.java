@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.integration.Message;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks one outstanding request of a non-blocking {@link SyncActivityBehaviorMessagingGateway}.
+ * <p/>
+ * The reply may arrive while the engine thread is still waiting for it (it's then applied in the original transaction),
+ * after the engine thread has given up but before the wait state has been committed (it's then held until the commit),
+ * or after the commit (it's then signalled right away). Whichever party moves the continuation on is told so by the
+ * return values of the methods below, so a reply is only ever applied once.
+ *
+ * @author Josh Long
+ */
+class ReplyContinuation {
+
+    private final String executionId;
+
+    private final CountDownLatch replied = new CountDownLatch(1);
+
+    private Message<?> reply;
+
+    private boolean deferred;
+
+    private boolean committed;
+
+    private boolean finished;
+
+    ReplyContinuation(String executionId) {
+        this.executionId = executionId;
+    }
+
+    String getExecutionId() {
+        return executionId;
+    }
+
+    /**
+     * called by the engine thread. Waits up to the given time for a reply; if none arrives, the continuation is deferred.
+     *
+     * @return the reply, to be applied inline, or null if the execution should become a wait state
+     */
+    Message<?> awaitReply(long timeout) throws InterruptedException {
+        if (timeout > 0) {
+            this.replied.await(timeout, TimeUnit.MILLISECONDS);
+        }
+        synchronized (this) {
+            if (this.reply != null) {
+                this.finished = true;
+                return this.reply;
+            }
+            this.deferred = true;
+            return null;
+        }
+    }
+
+    /**
+     * called when a reply arrives
+     *
+     * @return the reply if it should be signalled now, or null if someone else will take care of it
+     */
+    synchronized Message<?> offer(Message<?> reply) {
+        if (this.finished || this.reply != null) {
+            return null;
+        }
+        this.reply = reply;
+        if (this.deferred && this.committed) {
+            this.finished = true;
+            return reply;
+        }
+        this.replied.countDown();
+        return null;
+    }
+
+    /**
+     * called once the transaction that made the execution a wait state has committed
+     *
+     * @return a reply that arrived in the meantime and should be signalled now, or null
+     */
+    synchronized Message<?> commit() {
+        this.committed = true;
+        if (this.reply != null && !this.finished) {
+            this.finished = true;
+            return this.reply;
+        }
+        return null;
+    }
+
+    /**
+     * called when the reply timeout elapses
+     *
+     * @return true if no reply has been applied, in which case the continuation is abandoned
+     */
+    synchronized boolean expire() {
+        if (this.finished) {
+            return false;
+        }
+        this.finished = true;
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Command} that sets the process variables on, and then signals, each of a number of waiting executions.
+ * Because it's a single command, all of the work happens in one engine transaction: either every execution
+ * moves on, or none of them do.
+ *
+ * @author Josh Long
+ */
+public class SignalExecutionsCommand implements Command<Object> {
+
+    private final List<ExecutionSignal> executionSignals;
+
+    public SignalExecutionsCommand(List<ExecutionSignal> executionSignals) {
+        this.executionSignals = new ArrayList<ExecutionSignal>(executionSignals);
+    }
+
+    public Object execute(CommandContext commandContext) {
+        for (ExecutionSignal executionSignal : this.executionSignals) {
+            String executionId = executionSignal.getExecutionId();
+            ExecutionEntity execution = commandContext.getExecutionManager().findExecutionById(executionId);
+
+            if (execution == null) {
+                throw new ActivitiException("execution " + executionId + " doesn't exist");
+            }
+
+            for (Map.Entry<String, Object> variable : executionSignal.getProcessVariables().entrySet()) {
+                execution.setVariable(variable.getKey(), variable.getValue());
+            }
+
+            execution.signal(null, null);
+        }
+        return null;
+    }
+}
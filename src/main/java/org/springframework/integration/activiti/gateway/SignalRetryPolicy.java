@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.interceptor.Command;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.util.Assert;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs engine {@link Command}s, retrying the ones that fail with an {@link ActivitiOptimisticLockingException}, which
+ * is what happens when two replies for the same process instance are signalled at the same time. Each retry waits twice
+ * as long as the one before (starting at {@link #setInitialBackOff(long) initialBackOff} milliseconds and going no higher than
+ * {@link #setMaxBackOff(long) maxBackOff}, give or take a little jitter so that the colliding replies don't collide again),
+ * up to {@link #setMaxAttempts(int) maxAttempts} attempts in all.
+ *
+ * @author Josh Long
+ */
+public class SignalRetryPolicy {
+
+    private Log log = LogFactory.getLog(getClass());
+
+    private final Random random = new Random();
+
+    private volatile int maxAttempts = 4;
+
+    private volatile long initialBackOff = 10;
+
+    private volatile long maxBackOff = 1000;
+
+    private final AtomicLong collisionCount = new AtomicLong();
+
+    /**
+     * how many times to try a command, counting the first try. One means there are no retries.
+     *
+     * @param maxAttempts the maximum number of attempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        Assert.isTrue(maxAttempts > 0, "the 'maxAttempts' must be greater than zero");
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setInitialBackOff(long initialBackOff) {
+        Assert.isTrue(initialBackOff >= 0, "the 'initialBackOff' can't be negative");
+        this.initialBackOff = initialBackOff;
+    }
+
+    /**
+     * the longest, in milliseconds, to wait before a retry (not counting the jitter). Defaults to 1000.
+     *
+     * @param maxBackOff the maximum back-off
+     */
+    public void setMaxBackOff(long maxBackOff) {
+        Assert.isTrue(maxBackOff >= 0, "the 'maxBackOff' can't be negative");
+        this.maxBackOff = maxBackOff;
+    }
+
+    /**
+     * @return how many attempts have failed with an {@link ActivitiOptimisticLockingException}, retried or not
+     */
+    public long getCollisionCount() {
+        return this.collisionCount.get();
+    }
+
+    public <T> T execute(ProcessEngine processEngine, Command<T> command) {
+        long backOff = Math.min(this.initialBackOff, this.maxBackOff);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return ProcessSupport.executeCommand(processEngine, command);
+            } catch (ActivitiOptimisticLockingException e) {
+                this.collisionCount.incrementAndGet();
+                if (attempt >= this.maxAttempts) {
+                    throw e;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("optimistic locking collision on attempt " + attempt + " of " + this.maxAttempts + "; retrying in about " + backOff + "ms");
+                }
+                sleep(backOff);
+                backOff = Math.min(this.maxBackOff, backOff * 2);
+            }
+        }
+    }
+
+    private void sleep(long backOff) {
+        if (backOff <= 0) {
+            return;
+        }
+        long jitter;
+        synchronized (this.random) {
+            jitter = (long) (this.random.nextDouble() * backOff / 2);
+        }
+        try {
+            Thread.sleep(backOff + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry", e);
+        }
+    }
+}
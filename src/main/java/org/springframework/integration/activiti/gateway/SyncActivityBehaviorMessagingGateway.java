@@ -13,19 +13,313 @@
 package org.springframework.integration.activiti.gateway;
 
 import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
 import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.activiti.ActivitiConstants;
 import org.springframework.integration.activiti.ProcessSupport;
+import org.springframework.integration.activiti.metrics.Instrumentation;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
-public class SyncActivityBehaviorMessagingGateway extends AbstractActivityBehaviorMessagingGateway {
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous inbound gateway. The request message is sent and the reply is awaited on the engine's thread, so that
+ * the whole round trip happens inside one transaction, and the process moves on as if this were a regular state.
+ * <p/>
+ * In {@link #setNonBlocking(boolean) non-blocking} mode, the engine thread waits at most
+ * {@link #setInlineReplyTimeout(long) inlineReplyTimeout} milliseconds (zero, by default) for the reply. If the reply
+ * makes it in time, it's applied in the original transaction, exactly as before. Otherwise the execution becomes a wait
+ * state, the engine thread is released, and a continuation signals the execution once the reply arrives, so that
+ * hundreds of in-flight requests don't need hundreds of pooled threads. A continuation that hasn't seen a reply after
+ * {@link #setContinuationTimeout(long) continuationTimeout} milliseconds is abandoned: later replies are refused, and the
+ * request is sent to the {@link #setErrorChannel(MessageChannel) errorChannel}, wrapped in an
+ * {@link org.springframework.integration.message.ErrorMessage} whose cause is a {@link MessageTimeoutException}, so that
+ * the timed-out execution can be compensated for (signalled down an error path, or deleted, say). Without an error channel,
+ * the timeout is only logged. Either way, the execution stays in its wait state until something signals it. Replies
+ * that arrive in time but can't be signalled are sent to the error channel, too.
+ * <p/>
+ * The {@link #setSendTimeout(long) sendTimeout} and {@link #setReplyTimeout(long) replyTimeout} bound how long the engine
+ * thread may be held up by a slow downstream, and {@link #setMaxConcurrentRequests(int) maxConcurrentRequests} caps how
+ * many engine threads may wait on a reply at once. When the cap is reached, the gateway either fails fast, or, if
+ * {@link #setDegradeToWaitState(boolean) degradeToWaitState} is set, handles the request like a non-blocking one.
+ * <p/>
+ * With an {@link #setInstrumentation(Instrumentation) instrumentation}, the gateway records its requests, failures, how many
+ * engine threads are held up waiting on a reply, how long the replies take to arrive, and how long mapping and applying them takes.
+ *
+ * @author Josh Long
+ */
+public class SyncActivityBehaviorMessagingGateway extends AbstractActivityBehaviorMessagingGateway implements DisposableBean {
+
+    private volatile boolean nonBlocking;
+
+    private volatile long inlineReplyTimeout = 0;
+
+    private volatile long continuationTimeout = 60 * 1000;
+
+    private final ConcurrentMap<String, ReplyContinuation> continuations = new ConcurrentHashMap<String, ReplyContinuation>();
+
+    private volatile ScheduledExecutorService continuationExecutor;
+
+    private volatile long sendTimeout = -1;
+
+    private volatile long replyTimeout = -1;
+
+    /**
+     * how many engine threads may wait on a reply at once. Zero, the default, means there's no limit.
+     */
+    private volatile int maxConcurrentRequests = 0;
+
+    private volatile boolean degradeToWaitState;
+
+    private volatile Semaphore inFlightRequests;
+
+    /**
+     * Replies to non-blocking requests are sent here, and are then matched to their {@link ReplyContinuation} by execution id.
+     */
+    private final MessageChannel continuationReplyChannel = new MessageChannel() {
+        public boolean send(Message<?> message) {
+            return send(message, -1);
+        }
+
+        public boolean send(Message<?> message, long timeout) {
+            String executionId = (String) message.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY);
+            ReplyContinuation continuation = executionId == null ? null : continuations.get(executionId);
+
+            if (continuation == null) {
+                log.warn("no request is waiting for reply message " + message.getHeaders().getId() + " (executionId: " + executionId + ")");
+                return false;
+            }
+
+            Message<?> reply = continuation.offer(message);
+            if (reply != null) {
+                resume(continuation, reply);
+            }
+            return true;
+        }
+    };
 
     @Override
     protected void onExecute(ActivityExecution ex) throws Exception {
-        MessageBuilder<?> mb = doBasicOutboundMessageConstruction(ex);
-        Message<?> reply = this.messagingTemplate.sendAndReceive(this.requestChannel, mb.build());
+        Instrumentation instrumentation = this.instrumentation;
+        instrumentation.recordRequest();
+
+        Semaphore permits = this.inFlightRequests;
+
+        if (permits != null && !permits.tryAcquire()) {
+            if (this.degradeToWaitState) {
+                executeWithContinuation(ex, 0);
+                return;
+            }
+            instrumentation.recordError();
+            throw new MessageRejectedException(rejectedRequest(ex),
+                                                      "the limit of " + this.maxConcurrentRequests + " concurrent requests for gateway '" + this.beanName + "' has been reached");
+        }
+
+        instrumentation.incrementInFlight();
+        try {
+            if (this.nonBlocking) {
+                executeWithContinuation(ex, this.inlineReplyTimeout);
+                return;
+            }
+
+            Message<?> request = doBasicOutboundMessageConstruction(ex).build();
+            boolean timed = instrumentation.isEnabled();
+            long start = timed ? System.nanoTime() : 0;
+            Message<?> reply = this.messagingTemplate.sendAndReceive(this.requestChannel, request);
+            if (reply == null) {
+                throw new MessageTimeoutException(request, "no reply received within " + this.replyTimeout + "ms for execution " + ex.getId());
+            }
+            if (timed) {
+                instrumentation.recordDwellTime(System.nanoTime() - start);
+            }
+            applyReplyInline(ex, reply);
+        } catch (Exception e) {
+            instrumentation.recordError();
+            throw e;
+        } finally {
+            instrumentation.decrementInFlight();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * a stand-in for a request that's been turned away, carrying just the execution's ids. It's cheap to build, unlike the
+     * real request, which would fetch and map the process variables on the path that's meant to shed load.
+     */
+    private static Message<?> rejectedRequest(ActivityExecution ex) {
+        return MessageBuilder.withPayload(ex.getId())
+                       .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, ex.getId())
+                       .setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, ex.getProcessInstanceId())
+                       .build();
+    }
+
+    private void applyReplyInline(ActivityExecution ex, Message<?> reply) throws Exception {
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
         ProcessSupport.signalProcessExecution(this.processEngine, ex, new TransactionAwareProcessExecutionSignallerCallback(), headerMapper, reply);
         leave(ex); // undo the wait state nature of this class by explicitly leaving now
+
+        if (timed) {
+            instrumentation.recordEngineTime(System.nanoTime() - start);
+        }
+    }
+
+    private void executeWithContinuation(ActivityExecution ex, long inlineReplyTimeout) throws Exception {
+        final ReplyContinuation continuation = new ReplyContinuation(ex.getId());
+        this.continuations.put(continuation.getExecutionId(), continuation);
+
+        final Message<?> request = doBasicOutboundMessageConstruction(ex).setReplyChannel(this.continuationReplyChannel).build();
+
+        Instrumentation instrumentation = this.instrumentation;
+        boolean timed = instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+
+        Message<?> reply;
+        try {
+            this.messagingTemplate.send(this.requestChannel, request);
+            reply = continuation.awaitReply(inlineReplyTimeout);
+        } catch (Exception e) {
+            this.continuations.remove(continuation.getExecutionId(), continuation);
+            throw e;
+        }
+
+        if (reply != null) {
+            if (timed) {
+                instrumentation.recordDwellTime(System.nanoTime() - start);
+            }
+            this.continuations.remove(continuation.getExecutionId(), continuation);
+            applyReplyInline(ex, reply);
+            return;
+        }
+
+        // the execution stays a wait state. We can only signal it once that's been committed.
+        CommandContext commandContext = Context.getCommandContext();
+        commandContext.getTransactionContext().addTransactionListener(TransactionState.COMMITTED, new TransactionListener() {
+            public void execute(CommandContext commandContext) {
+                final Message<?> pendingReply = continuation.commit();
+                if (pendingReply != null) {
+                    // don't signal from inside the commit callback, the committed transaction may still be bound to this thread
+                    continuationExecutor.execute(new Runnable() {
+                        public void run() {
+                            resume(continuation, pendingReply);
+                        }
+                    });
+                }
+            }
+        });
+        commandContext.getTransactionContext().addTransactionListener(TransactionState.ROLLED_BACK, new TransactionListener() {
+            public void execute(CommandContext commandContext) {
+                continuation.expire();
+                continuations.remove(continuation.getExecutionId(), continuation);
+            }
+        });
+
+        this.continuationExecutor.schedule(new Runnable() {
+            public void run() {
+                if (continuation.expire()) {
+                    continuations.remove(continuation.getExecutionId(), continuation);
+                    onContinuationTimeout(continuation, request);
+                }
+            }
+        }, this.continuationTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void onContinuationTimeout(ReplyContinuation continuation, Message<?> request) {
+        this.instrumentation.recordError();
+        String description = "no reply arrived within " + this.continuationTimeout + "ms for execution " + continuation.getExecutionId();
+        if (!sendErrorMessage(request, description, new MessageTimeoutException(request, description))) {
+            log.error(description + "; it stays in its wait state");
+        }
+    }
+
+    private void resume(ReplyContinuation continuation, Message<?> reply) {
+        this.continuations.remove(continuation.getExecutionId(), continuation);
+        try {
+            ProcessSupport.signalProcessExecution(this.processEngine, continuation.getExecutionId(),
+                                                         new AsyncActivityBehaviorMessagingGateway.CommandProcessExecutionSignallerCallback(), headerMapper, reply);
+        } catch (Exception e) {
+            this.instrumentation.recordError();
+            String description = "couldn't signal execution " + continuation.getExecutionId() + " with reply message " + reply.getHeaders().getId();
+            if (!sendErrorMessage(reply, description, e)) {
+                log.error(description, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of non-blocking requests still waiting for a reply
+     */
+    public int getPendingContinuationCount() {
+        return this.continuations.size();
+    }
+
+    @SuppressWarnings("unused")
+    public void setNonBlocking(boolean nonBlocking) {
+        this.nonBlocking = nonBlocking;
+    }
+
+    @SuppressWarnings("unused")
+    public void setInlineReplyTimeout(long inlineReplyTimeout) {
+        this.inlineReplyTimeout = inlineReplyTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setContinuationTimeout(long continuationTimeout) {
+        this.continuationTimeout = continuationTimeout;
+    }
+
+    /**
+     * how long, in milliseconds, sending the request may block. Negative (the default) means forever.
+     *
+     * @param sendTimeout the send timeout
+     */
+    @SuppressWarnings("unused")
+    public void setSendTimeout(long sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    /**
+     * how long, in milliseconds, to wait for the reply before failing the activity. Negative (the default) means forever.
+     *
+     * @param replyTimeout the reply timeout
+     */
+    @SuppressWarnings("unused")
+    public void setReplyTimeout(long replyTimeout) {
+        this.replyTimeout = replyTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * should requests beyond {@link #setMaxConcurrentRequests(int) maxConcurrentRequests} become wait states
+     * (instead of failing)?
+     *
+     * @param degradeToWaitState whether to degrade to wait-state behaviour
+     */
+    @SuppressWarnings("unused")
+    public void setDegradeToWaitState(boolean degradeToWaitState) {
+        this.degradeToWaitState = degradeToWaitState;
     }
 
     static class TransactionAwareProcessExecutionSignallerCallback implements ProcessSupport.ProcessExecutionSignallerCallback {
@@ -40,6 +334,21 @@ public class SyncActivityBehaviorMessagingGateway extends AbstractActivityBehavi
 
     @Override
     protected void onInit() throws Exception {
-        // noop
+        this.messagingTemplate.setSendTimeout(this.sendTimeout);
+        this.messagingTemplate.setReceiveTimeout(this.replyTimeout);
+
+        if (this.maxConcurrentRequests > 0) {
+            this.inFlightRequests = new Semaphore(this.maxConcurrentRequests);
+        }
+
+        if (this.nonBlocking || (this.maxConcurrentRequests > 0 && this.degradeToWaitState)) {
+            this.continuationExecutor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(this.beanName + "Continuation-"));
+        }
+    }
+
+    public void destroy() throws Exception {
+        if (this.continuationExecutor != null) {
+            this.continuationExecutor.shutdownNow();
+        }
     }
 }
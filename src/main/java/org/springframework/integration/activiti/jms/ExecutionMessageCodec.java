@@ -0,0 +1,457 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.jms;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.gateway.ExecutionSnapshot;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact binary encoding for the gateways' request and reply messages, smaller and quicker than serializing the
+ * {@link Message} with Java serialization.
+ * <ul>
+ * <li>the well-known header names (the {@link ActivitiConstants} headers and the standard {@link MessageHeaders}) are
+ * written as a one byte index into a fixed dictionary; other header names are written out</li>
+ * <li>strings, numbers, booleans, dates, byte arrays and {@link ExecutionSnapshot}s are written with a one byte type tag
+ * and no class metadata. Integers and lengths are varints, and strings that are plain decimal numbers (as the engine's
+ * ids are) are written as varints, too</li>
+ * <li>anything else that's {@link Serializable} falls back to Java serialization. Headers whose values can't be encoded
+ * at all (a reply channel instance, say) are left out</li>
+ * </ul>
+ * The {@link MessageHeaders#ID id} and {@link MessageHeaders#TIMESTAMP timestamp} aren't encoded: the decoded message
+ * gets new ones, as it would from any other transport.
+ * <p/>
+ * The dictionary and the type tags are part of the format: add to the ends of them, never in between.
+ *
+ * @author Josh Long
+ */
+public class ExecutionMessageCodec {
+
+    private static final int VERSION = 1;
+
+    private static final String[] HEADER_DICTIONARY = new String[]{
+            ActivitiConstants.WELL_KNOWN_ACTIVITY_ID_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_ID_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_SIGNAL_FAILURE_CAUSE_HEADER_KEY,
+            ActivitiConstants.WELL_KNOWN_SIGNAL_FAILURE_MESSAGE_HEADER_KEY,
+            MessageHeaders.CORRELATION_ID,
+            MessageHeaders.REPLY_CHANNEL,
+            MessageHeaders.ERROR_CHANNEL,
+            MessageHeaders.EXPIRATION_DATE,
+            MessageHeaders.PRIORITY,
+            MessageHeaders.SEQUENCE_NUMBER,
+            MessageHeaders.SEQUENCE_SIZE
+    };
+
+    private static final Map<String, Integer> HEADER_INDEXES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < HEADER_DICTIONARY.length; i++) {
+            HEADER_INDEXES.put(HEADER_DICTIONARY[i], i);
+        }
+    }
+
+    // type tags
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int NUMERIC_STRING = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int TRUE = 5;
+    private static final int FALSE = 6;
+    private static final int DOUBLE = 7;
+    private static final int FLOAT = 8;
+    private static final int SHORT = 9;
+    private static final int BYTE = 10;
+    private static final int CHARACTER = 11;
+    private static final int DATE = 12;
+    private static final int BYTES = 13;
+    private static final int EXECUTION_SNAPSHOT = 14;
+    private static final int SERIALIZED = 15;
+
+    private Log log = LogFactory.getLog(getClass());
+
+    public byte[] encode(Message<?> message) {
+        Output out = new Output();
+        out.writeVarint(VERSION);
+
+        Map<String, Object> headers = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> header : message.getHeaders().entrySet()) {
+            String name = header.getKey();
+            if (MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)) {
+                continue;
+            }
+            if (!isEncodable(header.getValue())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("leaving out header '" + name + "', its value can't be encoded");
+                }
+                continue;
+            }
+            headers.put(name, header.getValue());
+        }
+
+        out.writeVarint(headers.size());
+        for (Map.Entry<String, Object> header : headers.entrySet()) {
+            Integer index = HEADER_INDEXES.get(header.getKey());
+            if (index != null) {
+                out.writeVarint(index + 1);
+            } else {
+                out.writeVarint(0);
+                out.writeString(header.getKey());
+            }
+            writeValue(out, header.getValue());
+        }
+
+        if (!isEncodable(message.getPayload())) {
+            throw new IllegalArgumentException("the payload of message " + message.getHeaders().getId() + " (a " +
+                                                       message.getPayload().getClass().getName() + ") can't be encoded");
+        }
+        writeValue(out, message.getPayload());
+        return out.toByteArray();
+    }
+
+    public Message<?> decode(byte[] bytes) {
+        Input in = new Input(bytes);
+        int version = in.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("can't decode version " + version + " of the format; only version " + VERSION + " is supported");
+        }
+
+        int headerCount = in.readVarint();
+        Map<String, Object> headers = new HashMap<String, Object>(headerCount * 4 / 3 + 1);
+        for (int i = 0; i < headerCount; i++) {
+            int index = in.readVarint();
+            String name = index == 0 ? in.readString() : HEADER_DICTIONARY[index - 1];
+            headers.put(name, readValue(in));
+        }
+
+        Object payload = readValue(in);
+        return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+    }
+
+    private static boolean isEncodable(Object value) {
+        return value == null || value instanceof Serializable;
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if (isNumeric(string)) {
+                out.write(NUMERIC_STRING);
+                out.writeVarlong(Long.parseLong(string));
+            } else {
+                out.write(STRING);
+                out.writeString(string);
+            }
+        } else if (value instanceof Integer) {
+            out.write(INTEGER);
+            out.writeVarlong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarlong(zigZag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeFixed64(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            out.writeFixed32(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.write(SHORT);
+            out.writeVarlong(zigZag((Short) value));
+        } else if (value instanceof Byte) {
+            out.write(BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Character) {
+            out.write(CHARACTER);
+            out.writeVarint((Character) value);
+        } else if (value.getClass() == Date.class) {
+            out.write(DATE);
+            out.writeVarlong(zigZag(((Date) value).getTime()));
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write(BYTES);
+            out.writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value.getClass() == ExecutionSnapshot.class) {
+            ExecutionSnapshot snapshot = (ExecutionSnapshot) value;
+            out.write(EXECUTION_SNAPSHOT);
+            writeValue(out, snapshot.getExecutionId());
+            writeValue(out, snapshot.getProcessInstanceId());
+            writeValue(out, snapshot.getActivityId());
+            out.writeVarint(snapshot.getVariables().size());
+            for (Map.Entry<String, Object> variable : snapshot.getVariables().entrySet()) {
+                out.writeString(variable.getKey());
+                writeValue(out, variable.getValue());
+            }
+        } else {
+            out.write(SERIALIZED);
+            byte[] bytes = serialize(value);
+            out.writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private Object readValue(Input in) {
+        int tag = in.read();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case NUMERIC_STRING:
+                return Long.toString(in.readVarlong());
+            case INTEGER:
+                return (int) unZigZag(in.readVarlong());
+            case LONG:
+                return unZigZag(in.readVarlong());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixed64());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readFixed32());
+            case SHORT:
+                return (short) unZigZag(in.readVarlong());
+            case BYTE:
+                return (byte) in.read();
+            case CHARACTER:
+                return (char) in.readVarint();
+            case DATE:
+                return new Date(unZigZag(in.readVarlong()));
+            case BYTES:
+                return in.readBytes(in.readVarint());
+            case EXECUTION_SNAPSHOT: {
+                String executionId = (String) readValue(in);
+                String processInstanceId = (String) readValue(in);
+                String activityId = (String) readValue(in);
+                int count = in.readVarint();
+                Map<String, Object> variables = new HashMap<String, Object>(count * 4 / 3 + 1);
+                for (int i = 0; i < count; i++) {
+                    String name = in.readString();
+                    variables.put(name, readValue(in));
+                }
+                return new ExecutionSnapshot(executionId, processInstanceId, activityId, variables);
+            }
+            case SERIALIZED:
+                return deserialize(in.readBytes(in.readVarint()));
+            default:
+                throw new IllegalArgumentException("unknown type tag " + tag);
+        }
+    }
+
+    /**
+     * @return true if the string is a non-negative decimal number that {@link Long#toString(long)} would print the same way
+     */
+    private static boolean isNumeric(String string) {
+        int length = string.length();
+        if (length == 0 || length > 18 || (length > 1 && string.charAt(0) == '0')) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("couldn't serialize a " + value.getClass().getName(), e);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("couldn't deserialize a value", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("couldn't deserialize a value", e);
+        }
+    }
+
+    /**
+     * a growable byte array, with varint and string writers
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(256);
+        }
+
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeFixed32(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                write(value >>> shift);
+            }
+        }
+
+        void writeFixed64(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(String string) {
+            byte[] bytes = utf8(string);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private static byte[] utf8(String string) {
+            try {
+                return string.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e); // every JVM supports UTF-8
+            }
+        }
+    }
+
+    /**
+     * reads back what {@link Output} wrote
+     */
+    private static class Input {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            if (this.position >= this.bytes.length) {
+                throw new IllegalArgumentException("unexpected end of the encoded message");
+            }
+            return this.bytes[this.position++] & 0xFF;
+        }
+
+        int readVarint() {
+            return (int) readVarlong();
+        }
+
+        long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        int readFixed32() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        long readFixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || this.position + length > this.bytes.length) {
+                throw new IllegalArgumentException("unexpected end of the encoded message");
+            }
+            byte[] copy = new byte[length];
+            System.arraycopy(this.bytes, this.position, copy, 0, length);
+            this.position += length;
+            return copy;
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length < 0 || this.position + length > this.bytes.length) {
+                throw new IllegalArgumentException("unexpected end of the encoded message");
+            }
+            try {
+                String string = new String(this.bytes, this.position, length, "UTF-8");
+                this.position += length;
+                return string;
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
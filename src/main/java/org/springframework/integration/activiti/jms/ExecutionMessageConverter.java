@@ -0,0 +1,74 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.jms;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.util.Assert;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+/**
+ * A {@link MessageConverter} that carries whole Spring Integration {@link Message}s (the gateways' requests and replies)
+ * across JMS as {@link BytesMessage}s encoded with an {@link ExecutionMessageCodec}.
+ * <p/>
+ * Configure it on the JMS adapters or gateways with <code>extract-payload="false"</code>, so that the headers travel
+ * in the body with the payload. Anything other than a {@link Message} is sent as the payload of a new message.
+ *
+ * @author Josh Long
+ */
+public class ExecutionMessageConverter implements MessageConverter {
+
+    private volatile ExecutionMessageCodec codec = new ExecutionMessageCodec();
+
+    @SuppressWarnings("unused")
+    public void setCodec(ExecutionMessageCodec codec) {
+        Assert.notNull(codec, "the codec can't be null");
+        this.codec = codec;
+    }
+
+    public javax.jms.Message toMessage(Object object, Session session) throws JMSException, MessageConversionException {
+        Message<?> message = object instanceof Message ? (Message<?>) object : MessageBuilder.withPayload(object).build();
+        byte[] bytes;
+        try {
+            bytes = this.codec.encode(message);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException("couldn't encode message " + message.getHeaders().getId(), e);
+        }
+        BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.writeBytes(bytes);
+        return bytesMessage;
+    }
+
+    public Object fromMessage(javax.jms.Message message) throws JMSException, MessageConversionException {
+        if (!(message instanceof BytesMessage)) {
+            throw new MessageConversionException("expected a BytesMessage, got a " + message.getClass().getName());
+        }
+        BytesMessage bytesMessage = (BytesMessage) message;
+        long length = bytesMessage.getBodyLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new MessageConversionException("message " + message.getJMSMessageID() + " is too large to decode");
+        }
+        byte[] bytes = new byte[(int) length];
+        bytesMessage.readBytes(bytes);
+        try {
+            return this.codec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException("couldn't decode message " + message.getJMSMessageID(), e);
+        }
+    }
+}
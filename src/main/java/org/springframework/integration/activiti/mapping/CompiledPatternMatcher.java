@@ -0,0 +1,218 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.mapping;
+
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches names against a fixed set of simple patterns (as understood by {@link PatternMatchUtils#simpleMatch(String, String)}),
+ * without scanning every pattern for every name.
+ * <p/>
+ * The patterns are compiled once: exact names go into a hash set, "foo*" patterns into a prefix trie, "*foo" patterns into a
+ * suffix trie, "*foo*" patterns into a list of substrings, and "*" short-circuits everything. Anything more elaborate
+ * (e.g. "foo*bar") is still handed to {@link PatternMatchUtils}. Decisions are cached per name, up to
+ * {@link #DEFAULT_CACHE_SIZE} names, so a name that has been seen before costs a single lookup.
+ *
+ * @author Josh Long
+ */
+public class CompiledPatternMatcher {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final String[] patterns;
+
+    private final boolean matchAll;
+
+    private final Set<String> exactNames = new HashSet<String>();
+
+    private final TrieNode prefixes = new TrieNode();
+
+    private final TrieNode suffixes = new TrieNode();
+
+    private final List<String> substrings = new ArrayList<String>();
+
+    private final List<String> complexPatterns = new ArrayList<String>();
+
+    private final int cacheSize;
+
+    private final ConcurrentHashMap<String, Boolean> decisions;
+
+    public CompiledPatternMatcher(String... patterns) {
+        this(DEFAULT_CACHE_SIZE, patterns);
+    }
+
+    public CompiledPatternMatcher(int cacheSize, String... patterns) {
+        this.patterns = patterns == null ? new String[0] : patterns;
+        this.cacheSize = cacheSize;
+        this.decisions = new ConcurrentHashMap<String, Boolean>();
+
+        boolean all = false;
+        for (String pattern : this.patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            int firstStar = pattern.indexOf('*');
+            int lastStar = pattern.lastIndexOf('*');
+
+            if (firstStar == -1) {
+                this.exactNames.add(pattern);
+            } else if (pattern.length() == 1 || (firstStar == 0 && lastStar == 1 && pattern.length() == 2)) {
+                all = true;
+            } else if (firstStar == lastStar && lastStar == pattern.length() - 1) {
+                this.prefixes.add(pattern.substring(0, lastStar), false);
+            } else if (firstStar == lastStar && firstStar == 0) {
+                this.suffixes.add(pattern.substring(1), true);
+            } else if (firstStar == 0 && lastStar == pattern.length() - 1 && pattern.indexOf('*', 1) == lastStar) {
+                this.substrings.add(pattern.substring(1, lastStar));
+            } else {
+                this.complexPatterns.add(pattern);
+            }
+        }
+        this.matchAll = all;
+    }
+
+    /**
+     * @return the patterns this matcher was compiled from
+     */
+    public String[] getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * @return true if every name matches (that is, one of the patterns is "*")
+     */
+    public boolean isMatchAll() {
+        return matchAll;
+    }
+
+    /**
+     * @return true if every pattern is an exact name (that is, there are no wildcards)
+     */
+    public boolean isExactNamesOnly() {
+        return !this.matchAll && this.prefixes.isEmpty() && this.suffixes.isEmpty() && this.substrings.isEmpty() && this.complexPatterns.isEmpty();
+    }
+
+    /**
+     * @return the patterns that are exact names
+     */
+    public Set<String> getExactNames() {
+        return Collections.unmodifiableSet(exactNames);
+    }
+
+    public boolean matches(String candidate) {
+        if (this.matchAll) {
+            return true;
+        }
+        if (candidate == null) {
+            return false;
+        }
+
+        Boolean decision = this.decisions.get(candidate);
+        if (decision != null) {
+            return decision;
+        }
+
+        boolean matches = computeMatch(candidate);
+        if (this.cacheSize > 0) {
+            if (this.decisions.size() >= this.cacheSize) {
+                this.decisions.clear();
+            }
+            this.decisions.put(candidate, matches);
+        }
+        return matches;
+    }
+
+    private boolean computeMatch(String candidate) {
+        if (this.exactNames.contains(candidate)) {
+            return true;
+        }
+        if (this.prefixes.matches(candidate, false)) {
+            return true;
+        }
+        if (this.suffixes.matches(candidate, true)) {
+            return true;
+        }
+        for (String substring : this.substrings) {
+            if (candidate.indexOf(substring) != -1) {
+                return true;
+            }
+        }
+        for (String pattern : this.complexPatterns) {
+            if (PatternMatchUtils.simpleMatch(pattern, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A character trie. For the suffix trie, keys are walked from their last character to their first.
+     */
+    private static class TrieNode {
+
+        private Map<Character, TrieNode> children;
+
+        private boolean terminal;
+
+        boolean isEmpty() {
+            return !this.terminal && this.children == null;
+        }
+
+        void add(String key, boolean reverse) {
+            TrieNode node = this;
+            int length = key.length();
+            for (int i = 0; i < length; i++) {
+                char c = key.charAt(reverse ? length - 1 - i : i);
+                if (node.children == null) {
+                    node.children = new HashMap<Character, TrieNode>();
+                }
+                TrieNode child = node.children.get(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        /**
+         * @return true if any key in this trie is a prefix (or, reversed, a suffix) of the candidate
+         */
+        boolean matches(String candidate, boolean reverse) {
+            TrieNode node = this;
+            int length = candidate.length();
+            for (int i = 0; ; i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i == length || node.children == null) {
+                    return false;
+                }
+                node = node.children.get(candidate.charAt(reverse ? length - 1 - i : i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+    }
+}
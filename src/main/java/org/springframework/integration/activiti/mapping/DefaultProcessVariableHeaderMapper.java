@@ -20,12 +20,14 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.activiti.ActivitiConstants;
 import org.springframework.integration.activiti.ProcessSupport;
-import org.springframework.integration.activiti.util.ActivityExecutionFactoryBean;
 import org.springframework.util.Assert;
-import org.springframework.util.PatternMatchUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -34,47 +36,119 @@ import java.util.*;
  * <p/>
  * The {@link #processVariableToHeaderNames} and {@link #headerToProcessVariableNames} may be configured.
  * <p/>
- * They accept exact name Strings or simple patterns (e.g. "start*", "*end", or "*").
+ * They accept exact name Strings or simple patterns (e.g. "start*", "*end", or "*"). The patterns are compiled into a
+ * {@link CompiledPatternMatcher} when they're set, so matching a name doesn't mean scanning every pattern.
  * <p/>
  * By default all headers in {@link org.springframework.integration.activiti.ActivitiConstants} will be accepted.
  * <p/>
  * Any outbound header that should be mapped must be configured explicitly. Note that the outbound mapping only writes
  * String header values into attributes on the header. For anything more advanced, one should implement the HeaderMapper interface directly.
+ * <p/>
+ * Headers that become process variables go through a type policy. Strings, numbers, booleans, characters and dates are
+ * stored as they are. Anything else is handed to the first {@link ProcessVariableConverter} registered for its type (see
+ * {@link #setProcessVariableConverters(Map)}), and if there's none it's stored as a serialized object, unless
+ * {@link #setAllowSerializedValues(boolean) serialized values} have been switched off. If a
+ * {@link #setMaxProcessVariableSize(int) maximum size} is set, larger values are rejected or dropped, according to the
+ * {@link OversizedValuePolicy}.
  *
  * @author Josh Long
  * @since 5.1
  */
 public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeaderMapper, InitializingBean {
 
+    /**
+     * what to do with a header whose value is larger than the {@link #setMaxProcessVariableSize(int) maximum size}
+     */
+    public static enum OversizedValuePolicy {
+        /**
+         * fail the mapping with an {@link IllegalArgumentException}
+         */
+        REJECT,
+        /**
+         * leave the process variable out, and log a warning
+         */
+        DROP
+    }
+
+    /**
+     * the types that the engine stores inline, which are passed through untouched
+     */
+    private static final Set<Class<?>> SIMPLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class, Date.class));
+
+    /**
+     * returned by the type policy for a value that should be left out
+     */
+    private static final Object DROPPED = new Object();
+
+    /**
+     * how many value types the {@link #resolvedConverters} cache holds before it's cleared. A process sees only a handful
+     * of types, so this is far smaller than the name caches
+     */
+    private static final int RESOLVED_CONVERTER_CACHE_SIZE = 256;
+
+    /**
+     * marks a type that no converter is registered for, in the {@link #resolvedConverters} cache
+     */
+    private static final ProcessVariableConverter NO_CONVERTER = new ProcessVariableConverter() {
+        public Object convert(Object value) {
+            return value;
+        }
+    };
+
     /**
      * cached length of the header prefix
      */
-    private int wellKnownHeaderPrefixLength;
+    private int wellKnownHeaderPrefixLength = ActivitiConstants.WELL_KNOWN_SPRING_INTEGRATION_HEADER_PREFIX.length();
 
     /**
      * all headers that we want to forward as process variables. None, by default, as headers may be rich objects where as process variables <em>should</em> be lightweight (primitives, for example)
      */
-    private String[] headerToProcessVariableNames = new String[0];
+    private volatile CompiledPatternMatcher headerToProcessVariableNames = new CompiledPatternMatcher();
 
     /**
      * all process variables that should be exposed as headers
      */
-    private String[] processVariableToHeaderNames = new String[]{"*"};
+    private volatile CompiledPatternMatcher processVariableToHeaderNames = new CompiledPatternMatcher("*");
 
     private boolean shouldPrefixProcessVariables = false;
 
     private String prefix = ActivitiConstants.WELL_KNOWN_SPRING_INTEGRATION_HEADER_PREFIX;
 
+    /**
+     * process variable names, mapped to their prefixed header names
+     */
+    private volatile Map<String, String> prefixedNames = new ConcurrentHashMap<String, String>();
+
     private Log log = LogFactory.getLog(getClass());
 
+    /**
+     * converters for rich header values, by type, in the order they should be tried
+     */
+    private volatile Map<Class<?>, ProcessVariableConverter> processVariableConverters = new LinkedHashMap<Class<?>, ProcessVariableConverter>();
+
+    /**
+     * the converter for each concrete type that's been seen, so the converters are only searched once per type
+     */
+    private volatile Map<Class<?>, ProcessVariableConverter> resolvedConverters = new ConcurrentHashMap<Class<?>, ProcessVariableConverter>();
+
+    private volatile boolean allowSerializedValues = true;
+
+    /**
+     * the largest value (in characters for strings, in bytes for anything else) that may be stored, or 0 for no limit
+     */
+    private volatile int maxProcessVariableSize = 0;
+
+    private volatile OversizedValuePolicy oversizedValuePolicy = OversizedValuePolicy.REJECT;
+
     /**
      * by default, we'll also correctly forward keys starting with {@link ActivitiConstants#WELL_KNOWN_SPRING_INTEGRATION_HEADER_PREFIX}
      */
     private boolean includeHeadersWithWellKnownPrefix = true;
 
     /**
-     * this shall be a thread-safe proxy so that this class may be configured once and then reused in a thread-safe way through subsequent accesses
-     * and also take advantage of unit testing.
+     * a fixed execution, for unit testing. If this is null (the default), the execution the engine is currently running on
+     * the calling thread is used, which lets this class be configured once and then reused in a thread-safe way.
      */
     private volatile ActivityExecution activitiExecution;
 
@@ -88,33 +162,11 @@ public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeader
                                                      ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_ID_HEADER_KEY,
                                                      ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_NAME_HEADER_KEY));
 
-    private boolean matchesAny(String[] patterns, String candidate) {
-        for (String pattern : patterns) {
-            if (PatternMatchUtils.simpleMatch(pattern, candidate)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     public DefaultProcessVariableHeaderMapper(ActivityExecution e) {
         setCurrentActivityExecution(e);
     }
 
     public DefaultProcessVariableHeaderMapper() {
-        try {
-            ActivityExecutionFactoryBean activityExecutionFactoryBean = new ActivityExecutionFactoryBean();
-            activityExecutionFactoryBean.afterPropertiesSet();
-            setCurrentActivityExecution(activityExecutionFactoryBean.getObject());
-
-        } catch (Throwable throwable) {
-
-            if (log.isErrorEnabled()) {
-                log.error("Exception occurred when trying to invoke " + ActivityExecutionFactoryBean.class.getName() + "#getObject()");
-            }
-
-            throw new RuntimeException(throwable);
-        }
     }
 
     /**
@@ -131,38 +183,144 @@ public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeader
         this.activitiExecution = ae;
     }
 
+    /**
+     * the mapped headers are written straight into the target, there's no intermediate copy
+     */
     public void fromHeaders(MessageHeaders headers, Map<String, Object> target) {
         Assert.notNull(target, "the target can't be null");
 
-        Map<String, Object> procVars = new HashMap<String, Object>();
+        boolean debug = log.isDebugEnabled();
 
-        for (String messageHeaderKey : headers.keySet()) {
+        for (Map.Entry<String, Object> header : headers.entrySet()) {
+            String messageHeaderKey = header.getKey();
             if (shouldMapHeaderToProcessVariable(messageHeaderKey)) {
-                String pvName = messageHeaderKey.startsWith(prefix)
+                String pvName = (this.wellKnownHeaderPrefixLength > 0 && messageHeaderKey.startsWith(prefix))
                                         ? messageHeaderKey.substring(wellKnownHeaderPrefixLength)
                                         : messageHeaderKey;
-                procVars.put(pvName, headers.get(messageHeaderKey));
+                Object value = header.getValue();
+                if (value != null && !SIMPLE_TYPES.contains(value.getClass())) {
+                    value = toProcessVariableValue(pvName, value);
+                    if (value == DROPPED) {
+                        continue;
+                    }
+                }
+                target.put(pvName, value);
 
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("mapping header '%s' to process variable '%s'", messageHeaderKey, pvName));
+                if (debug) {
+                    log.debug("mapping header '" + messageHeaderKey + "' to process variable '" + pvName + "'");
                 }
-            } else {
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("NOT mapping header '%s' to process variable", messageHeaderKey));
+            } else if (debug) {
+                log.debug("NOT mapping header '" + messageHeaderKey + "' to process variable");
+            }
+        }
+    }
+
+    /**
+     * applies the type policy to a value that isn't one of the {@link #SIMPLE_TYPES}
+     *
+     * @return the value to store, or {@link #DROPPED}
+     */
+    private Object toProcessVariableValue(String processVariableName, Object value) {
+        if (!(value instanceof String) && !(value instanceof Date)) {
+            ProcessVariableConverter converter = converterFor(value.getClass());
+            if (converter != NO_CONVERTER) {
+                value = converter.convert(value);
+            } else if (!(value instanceof byte[]) && !this.allowSerializedValues) {
+                throw new IllegalArgumentException("process variable '" + processVariableName + "' would be stored as a serialized " +
+                                                           value.getClass().getName() + ", and serialized values aren't allowed");
+            }
+        }
+
+        int max = this.maxProcessVariableSize;
+        if (max > 0 && value != null) {
+            long size = sizeOf(value, max);
+            if (size > max) {
+                String description = "process variable '" + processVariableName + "' (a " + value.getClass().getName() +
+                                             ") is larger than the maximum size of " + max;
+                if (this.oversizedValuePolicy == OversizedValuePolicy.REJECT) {
+                    throw new IllegalArgumentException(description);
                 }
+                log.warn(description + ", dropping it");
+                return DROPPED;
             }
         }
+        return value;
+    }
+
+    private ProcessVariableConverter converterFor(Class<?> type) {
+        Map<Class<?>, ProcessVariableConverter> resolved = this.resolvedConverters;
+        ProcessVariableConverter converter = resolved.get(type);
+        if (converter == null) {
+            converter = NO_CONVERTER;
+            for (Map.Entry<Class<?>, ProcessVariableConverter> candidate : this.processVariableConverters.entrySet()) {
+                if (candidate.getKey().isAssignableFrom(type)) {
+                    converter = candidate.getValue();
+                    break;
+                }
+            }
+            if (resolved.size() >= RESOLVED_CONVERTER_CACHE_SIZE) {
+                resolved.clear();
+            }
+            resolved.put(type, converter);
+        }
+        return converter;
+    }
+
+    /**
+     * the size of a value: characters for strings, bytes for byte arrays, and the serialized size for anything else.
+     * Serialization stops as soon as the limit's been passed.
+     */
+    private static long sizeOf(Object value, final int limit) {
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (SIMPLE_TYPES.contains(value.getClass()) || value instanceof Date) {
+            return 0;
+        }
+
+        final long[] count = new long[1];
+        OutputStream counter = new OutputStream() {
+            public void write(int b) throws IOException {
+                count[0]++;
+                checkLimit();
+            }
+
+            public void write(byte[] b, int off, int len) throws IOException {
+                count[0] += len;
+                checkLimit();
+            }
 
-        for (String k : procVars.keySet()) {
-            target.put(k, procVars.get(k));
+            private void checkLimit() throws IOException {
+                if (count[0] > limit) {
+                    throw new LimitExceededException();
+                }
+            }
+        };
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(counter);
+            out.writeObject(value);
+            out.flush();
+        } catch (LimitExceededException e) {
+            // count[0] is past the limit, which is all we need to know
+        } catch (IOException e) {
+            return 0; // not serializable: the engine will complain about it in its own words
         }
+        return count[0];
+    }
+
+    private static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
     }
 
     private boolean shouldMapHeaderToProcessVariable(String headerName) {
         Assert.isTrue(StringUtils.hasText(headerName), "the header must not be empty");
 
         // first test. it might just be a direct match with something that has the prefix
-        if (this.includeHeadersWithWellKnownPrefix && headerName.startsWith(prefix)) {
+        if (this.includeHeadersWithWellKnownPrefix && this.wellKnownHeaderPrefixLength > 0 && headerName.startsWith(prefix)) {
             return true;
         }
 
@@ -170,14 +328,14 @@ public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeader
             return true;
         }
 
-        // if this didnt work, then we scan to see if the headers match a fuzzy algorithm
-        return matchesAny(this.headerToProcessVariableNames, headerName);
+        // if this didnt work, then we see if the headers match a fuzzy algorithm
+        return this.headerToProcessVariableNames.matches(headerName);
     }
 
     private boolean shouldMapProcessVariableToHeader(String procVarName) {
         Assert.notNull(StringUtils.hasText(procVarName), "the process variable must not be null");
 
-        return matchesAny(this.processVariableToHeaderNames, procVarName);
+        return this.processVariableToHeaderNames.matches(procVarName);
     }
 
     public void setShouldPrefixProcessVariables(boolean shouldPrefixProcessVariables) {
@@ -191,27 +349,105 @@ public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeader
      * @return a map of headers to send with the Spring Integration message
      */
     public Map<String, ?> toHeaders(Map<String, Object> processVariables) {
-        Map<String, Object> headers = new HashMap<String, Object>();
+        // room for the mapped variables plus the well known headers, without rehashing
+        Map<String, Object> headers = new HashMap<String, Object>(((processVariables.size() + 3) * 4) / 3 + 1);
+        toHeaders(processVariables, headers);
+        return headers;
+    }
+
+    /**
+     * like {@link #toHeaders(Map)}, but writes the headers straight into the given target
+     *
+     * @param processVariables the processVariables
+     * @param target           the map that receives the headers
+     */
+    public void toHeaders(Map<String, Object> processVariables, Map<String, Object> target) {
+        ActivityExecution execution = this.activitiExecution;
+        toHeaders(execution != null ? execution : ProcessSupport.getCurrentActivityExecution(), processVariables, target);
+    }
+
+    /**
+     * like {@link #toHeaders(Map, Map)}, for callers that already have the current {@link ActivityExecution} at hand
+     *
+     * @param execution        the execution whose ids should be propagated. May be null, if there's none.
+     * @param processVariables the processVariables
+     * @param target           the map that receives the headers
+     */
+    public void toHeaders(ActivityExecution execution, Map<String, Object> processVariables, Map<String, Object> target) {
+        boolean prefixing = this.shouldPrefixProcessVariables && this.wellKnownHeaderPrefixLength > 0;
+        boolean debug = log.isDebugEnabled();
 
-        for (String mhk : processVariables.keySet()) {
+        for (Map.Entry<String, Object> processVariable : processVariables.entrySet()) {
+            String mhk = processVariable.getKey();
             if (shouldMapProcessVariableToHeader(mhk)) {
-                String hKey = (this.shouldPrefixProcessVariables && StringUtils.hasText(this.prefix))
-                                      ? this.prefix + mhk
-                                      : mhk;
+                String hKey = prefixing ? prefixedName(mhk) : mhk;
 
-                if( log.isDebugEnabled())
-                    log.debug(String.format( "mapping process variable '%s' to header '%s'", hKey,  (mhk)));
+                if (debug) {
+                    log.debug("mapping process variable '" + mhk + "' to header '" + hKey + "'");
+                }
 
-                headers.put(hKey, processVariables.get(mhk));
-            } else {
-                if(log.isDebugEnabled())
-                log.debug(String.format( "NOT mapping process variable '%s' to header",   (mhk)));
+                target.put(hKey, processVariable.getValue());
+            } else if (debug) {
+                log.debug("NOT mapping process variable '" + mhk + "' to header");
             }
         }
 
-        ProcessSupport.encodeCommonProcessDataIntoMessage(activitiExecution, headers);
+        if (execution != null) {
+            ProcessSupport.encodeCommonProcessDataIntoMessage(execution, target);
+        }
+    }
 
-        return headers;
+    /**
+     * Fetches only the process variables that {@link #toHeaders(Map)} would map, instead of every variable of the execution
+     * (and its parents). When the configured names are all exact names, only those variables are fetched. When they contain
+     * patterns, the variable names are fetched first, and only the values of the matching variables are loaded, so large
+     * serialized variables that aren't mapped are never deserialized.
+     *
+     * @param execution the execution whose variables should be fetched
+     * @return the process variables that should be mapped to headers
+     */
+    public Map<String, Object> getMappedProcessVariables(ActivityExecution execution) {
+        CompiledPatternMatcher matcher = this.processVariableToHeaderNames;
+
+        if (matcher.isExactNamesOnly()) {
+            Set<String> names = matcher.getExactNames();
+            Map<String, Object> variables = new HashMap<String, Object>(names.size() * 4 / 3 + 1);
+            for (String name : names) {
+                if (execution.hasVariable(name)) {
+                    variables.put(name, execution.getVariable(name));
+                }
+            }
+            return variables;
+        }
+
+        if (matcher.isMatchAll()) {
+            return execution.getVariables();
+        }
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        for (String name : execution.getVariableNames()) {
+            if (matcher.matches(name)) {
+                variables.put(name, execution.getVariable(name));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * the prefixed header name for a process variable. These are computed once per name (and interned), since the same
+     * process variables tend to be mapped over and over.
+     */
+    private String prefixedName(String processVariableName) {
+        Map<String, String> names = this.prefixedNames;
+        String prefixed = names.get(processVariableName);
+        if (prefixed == null) {
+            prefixed = (this.prefix + processVariableName).intern();
+            if (names.size() >= CompiledPatternMatcher.DEFAULT_CACHE_SIZE) {
+                names.clear();
+            }
+            names.put(processVariableName, prefixed);
+        }
+        return prefixed;
     }
 
     public void afterPropertiesSet() throws Exception {
@@ -220,19 +456,48 @@ public class DefaultProcessVariableHeaderMapper implements ProcessVariableHeader
     }
 
     public void setHeaderToProcessVariableNames(String... h) {
-        this.headerToProcessVariableNames = (null == h)
-                                                    ? new String[0]
-                                                    : h;
+        this.headerToProcessVariableNames = new CompiledPatternMatcher(h);
     }
 
     public void setProcessVariableToHeaderNames(String... ar) {
-        this.processVariableToHeaderNames = (null == ar)
-                                                    ? new String[0]
-                                                    : ar;
+        this.processVariableToHeaderNames = new CompiledPatternMatcher(ar);
+    }
+
+    /**
+     * @param processVariableConverters converters for rich header values, by the type they handle. The first one whose
+     *                                  type matches a value is used, so register the more specific types first.
+     */
+    public void setProcessVariableConverters(Map<Class<?>, ProcessVariableConverter> processVariableConverters) {
+        Assert.notNull(processVariableConverters, "the processVariableConverters can't be null");
+        this.processVariableConverters = new LinkedHashMap<Class<?>, ProcessVariableConverter>(processVariableConverters);
+        this.resolvedConverters = new ConcurrentHashMap<Class<?>, ProcessVariableConverter>();
+    }
+
+    /**
+     * @param allowSerializedValues whether rich values that no converter handles may be stored as serialized objects.
+     *                              If false, they're rejected. True by default.
+     */
+    public void setAllowSerializedValues(boolean allowSerializedValues) {
+        this.allowSerializedValues = allowSerializedValues;
+    }
+
+    /**
+     * @param maxProcessVariableSize the largest value (in characters for strings, in bytes for byte arrays and serialized
+     *                               objects) that may be stored as a process variable, or 0 (the default) for no limit
+     */
+    public void setMaxProcessVariableSize(int maxProcessVariableSize) {
+        Assert.isTrue(maxProcessVariableSize >= 0, "the maxProcessVariableSize can't be negative");
+        this.maxProcessVariableSize = maxProcessVariableSize;
+    }
+
+    public void setOversizedValuePolicy(OversizedValuePolicy oversizedValuePolicy) {
+        Assert.notNull(oversizedValuePolicy, "the oversizedValuePolicy can't be null");
+        this.oversizedValuePolicy = oversizedValuePolicy;
     }
 
     public void setPrefix(String prefix) {
         this.prefix = prefix;
+        this.prefixedNames = new ConcurrentHashMap<String, String>();
         this.wellKnownHeaderPrefixLength = StringUtils.hasText(this.prefix)
                                                    ? this.prefix.length()
                                                    : 0;
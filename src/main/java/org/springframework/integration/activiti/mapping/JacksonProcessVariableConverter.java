@@ -0,0 +1,42 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.mapping;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+
+/**
+ * A {@link ProcessVariableConverter} that stores values as JSON strings, using Jackson.
+ *
+ * @author Josh Long
+ */
+public class JacksonProcessVariableConverter implements ProcessVariableConverter {
+
+    private volatile ObjectMapper objectMapper = new ObjectMapper();
+
+    @SuppressWarnings("unused")
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        Assert.notNull(objectMapper, "the objectMapper can't be null");
+        this.objectMapper = objectMapper;
+    }
+
+    public Object convert(Object value) {
+        try {
+            return this.objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("couldn't write a " + value.getClass().getName() + " as JSON", e);
+        }
+    }
+}
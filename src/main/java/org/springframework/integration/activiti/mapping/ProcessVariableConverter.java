@@ -0,0 +1,30 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.mapping;
+
+/**
+ * Turns a rich header value into something lightweight (a String, typically) before
+ * {@link DefaultProcessVariableHeaderMapper} stores it as a process variable, so that it isn't written to the engine's
+ * byte array table as a serialized object.
+ *
+ * @author Josh Long
+ * @see DefaultProcessVariableHeaderMapper#setProcessVariableConverters(java.util.Map)
+ */
+public interface ProcessVariableConverter {
+
+    /**
+     * @param value the header value. Never null.
+     * @return the value to store as the process variable
+     */
+    Object convert(Object value);
+}
@@ -0,0 +1,66 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.metrics;
+
+/**
+ * Receives the timings and counts from the gateways and the process-starting adapter. Each component has its own
+ * instrumentation (share an instance to have the numbers added up), which is {@link NoOpInstrumentation#INSTANCE} until one
+ * is set.
+ * <p/>
+ * Every method is called on the message path, so implementations must be quick and thread safe. All times are in
+ * nanoseconds. When {@link #isEnabled()} returns false, the callers don't even read the clock.
+ *
+ * @author Josh Long
+ * @see SimpleInstrumentation
+ */
+public interface Instrumentation {
+
+    /**
+     * @return false if nothing is recorded, so there's no point in timing anything
+     */
+    boolean isEnabled();
+
+    /**
+     * a request came in: an execution reached a gateway, or a message reached the adapter
+     */
+    void recordRequest();
+
+    /**
+     * @param nanos how long it took to map the process variables to headers (or the headers to process variables)
+     */
+    void recordMappingTime(long nanos);
+
+    /**
+     * @param nanos how long it took to send the request message
+     */
+    void recordSendTime(long nanos);
+
+    /**
+     * @param nanos how long the engine took to signal an execution, or to start a process instance
+     */
+    void recordEngineTime(long nanos);
+
+    /**
+     * @param nanos how long an execution waited, from its request being sent to its reply being accepted
+     */
+    void recordDwellTime(long nanos);
+
+    void recordError();
+
+    /**
+     * one more request is in flight: an execution is waiting on its reply, or a message is waiting on its process instance
+     */
+    void incrementInFlight();
+
+    void decrementInFlight();
+}
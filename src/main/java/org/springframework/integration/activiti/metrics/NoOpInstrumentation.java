@@ -0,0 +1,54 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.metrics;
+
+/**
+ * The default {@link Instrumentation}, which records nothing.
+ *
+ * @author Josh Long
+ */
+public final class NoOpInstrumentation implements Instrumentation {
+
+    public static final NoOpInstrumentation INSTANCE = new NoOpInstrumentation();
+
+    private NoOpInstrumentation() {
+    }
+
+    public boolean isEnabled() {
+        return false;
+    }
+
+    public void recordRequest() {
+    }
+
+    public void recordMappingTime(long nanos) {
+    }
+
+    public void recordSendTime(long nanos) {
+    }
+
+    public void recordEngineTime(long nanos) {
+    }
+
+    public void recordDwellTime(long nanos) {
+    }
+
+    public void recordError() {
+    }
+
+    public void incrementInFlight() {
+    }
+
+    public void decrementInFlight() {
+    }
+}
@@ -0,0 +1,194 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Instrumentation} that keeps running counts, means and maximums in a handful of atomic counters, so recording
+ * never allocates. Declare one per gateway or adapter and, to see the numbers in JMX, export it with an annotation-aware
+ * {@link org.springframework.jmx.export.MBeanExporter} (<code>&lt;context:mbean-export/&gt;</code>, say). Times are reported
+ * in milliseconds.
+ *
+ * @author Josh Long
+ */
+@ManagedResource(description = "timings and counts for an Activiti gateway or adapter")
+public class SimpleInstrumentation implements Instrumentation {
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final Timing mapping = new Timing();
+
+    private final Timing send = new Timing();
+
+    private final Timing engine = new Timing();
+
+    private final Timing dwell = new Timing();
+
+    private volatile long since = System.nanoTime();
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public void recordRequest() {
+        this.requests.incrementAndGet();
+    }
+
+    public void recordMappingTime(long nanos) {
+        this.mapping.record(nanos);
+    }
+
+    public void recordSendTime(long nanos) {
+        this.send.record(nanos);
+    }
+
+    public void recordEngineTime(long nanos) {
+        this.engine.record(nanos);
+    }
+
+    public void recordDwellTime(long nanos) {
+        this.dwell.record(nanos);
+    }
+
+    public void recordError() {
+        this.errors.incrementAndGet();
+    }
+
+    public void incrementInFlight() {
+        this.inFlight.incrementAndGet();
+    }
+
+    public void decrementInFlight() {
+        this.inFlight.decrementAndGet();
+    }
+
+    @ManagedAttribute(description = "requests since the last reset")
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    @ManagedAttribute(description = "requests per second since the last reset")
+    public double getRequestRate() {
+        long elapsed = System.nanoTime() - this.since;
+        return elapsed <= 0 ? 0 : this.requests.get() / (elapsed / 1e9);
+    }
+
+    @ManagedAttribute(description = "errors since the last reset")
+    public long getErrorCount() {
+        return this.errors.get();
+    }
+
+    @ManagedAttribute(description = "requests waiting on a reply or a process instance")
+    public long getInFlight() {
+        return this.inFlight.get();
+    }
+
+    @ManagedAttribute(description = "mean time, in milliseconds, to map between headers and process variables")
+    public double getMeanMappingTime() {
+        return this.mapping.getMean();
+    }
+
+    @ManagedAttribute(description = "longest time, in milliseconds, to map between headers and process variables")
+    public double getMaxMappingTime() {
+        return this.mapping.getMax();
+    }
+
+    @ManagedAttribute(description = "mean time, in milliseconds, to send a request")
+    public double getMeanSendTime() {
+        return this.send.getMean();
+    }
+
+    @ManagedAttribute(description = "longest time, in milliseconds, to send a request")
+    public double getMaxSendTime() {
+        return this.send.getMax();
+    }
+
+    @ManagedAttribute(description = "mean time, in milliseconds, to signal an execution or start a process instance")
+    public double getMeanEngineTime() {
+        return this.engine.getMean();
+    }
+
+    @ManagedAttribute(description = "longest time, in milliseconds, to signal an execution or start a process instance")
+    public double getMaxEngineTime() {
+        return this.engine.getMax();
+    }
+
+    @ManagedAttribute(description = "mean time, in milliseconds, from a request being sent to its reply being accepted")
+    public double getMeanDwellTime() {
+        return this.dwell.getMean();
+    }
+
+    @ManagedAttribute(description = "longest time, in milliseconds, from a request being sent to its reply being accepted")
+    public double getMaxDwellTime() {
+        return this.dwell.getMax();
+    }
+
+    /**
+     * starts counting afresh. The in-flight gauge isn't a count, so it's left alone.
+     */
+    @ManagedOperation(description = "resets the counts and timings")
+    public void reset() {
+        this.requests.set(0);
+        this.errors.set(0);
+        this.mapping.reset();
+        this.send.reset();
+        this.engine.reset();
+        this.dwell.reset();
+        this.since = System.nanoTime();
+    }
+
+    /**
+     * a count, a total and a maximum, in nanoseconds
+     */
+    private static class Timing {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            this.count.incrementAndGet();
+            this.total.addAndGet(nanos);
+            long current = this.max.get();
+            while (nanos > current && !this.max.compareAndSet(current, nanos)) {
+                current = this.max.get();
+            }
+        }
+
+        double getMean() {
+            long n = this.count.get();
+            return n == 0 ? 0 : this.total.get() / (double) n / 1e6;
+        }
+
+        double getMax() {
+            return this.max.get() / 1e6;
+        }
+
+        void reset() {
+            this.count.set(0);
+            this.total.set(0);
+            this.max.set(0);
+        }
+    }
+}
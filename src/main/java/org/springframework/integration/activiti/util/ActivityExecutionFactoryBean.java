@@ -22,9 +22,16 @@ import java.lang.reflect.Method;
 /**
  * Factories a thread-safe {@link ActivityExecution} instance that can be used safely any time there is an overarching {@link ProcessInstance},
  * including for most cases supported by {@link org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper}.
+ * <p/>
+ * Every call on the proxy is dispatched reflectively. Prefer
+ * {@link org.springframework.integration.activiti.ProcessSupport#getCurrentActivityExecution()}, which returns the real
+ * execution; {@link org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper} no longer needs
+ * this proxy at all.
  *
  * @author Josh Long
+ * @deprecated kept for compatibility only
  */
+@Deprecated
 public class ActivityExecutionFactoryBean implements FactoryBean<ActivityExecution>, InitializingBean {
     private ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
     private Log log = LogFactory.getLog(getClass());
@@ -60,7 +67,9 @@ public class ActivityExecutionFactoryBean implements FactoryBean<ActivityExecuti
             public Object invoke(MethodInvocation methodInvocation) throws Throwable {
                 String methodName = methodInvocation.getMethod().getName();
 
-                log.info("method invocation for " + methodName + ".");
+                if (log.isTraceEnabled()) {
+                    log.trace("method invocation for " + methodName + ".");
+                }
 
                 if (methodName.equals("toString")) {
                     return "SharedActivitiExecution";
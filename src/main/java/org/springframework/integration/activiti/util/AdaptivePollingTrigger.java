@@ -0,0 +1,89 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.util;
+
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.util.Assert;
+
+import java.util.Date;
+
+/**
+ * A {@link Trigger} for pollers that backs off while there's nothing to receive, and polls again right away while there is.
+ * After every poll that received a message (as reported through {@link #messageReceived()}), the next poll happens after
+ * {@link #setMinInterval(long) minInterval} milliseconds; after every empty poll, the interval is multiplied by
+ * {@link #setBackOffMultiplier(double) backOffMultiplier}, up to {@link #setMaxInterval(long) maxInterval} milliseconds.
+ * <p/>
+ * Combine it with a generous <code>max-messages-per-poll</code> so that a busy channel is drained in a few polls, and an idle
+ * one costs a poll every {@code maxInterval} milliseconds at most.
+ *
+ * @author Josh Long
+ */
+public class AdaptivePollingTrigger implements Trigger {
+
+    private volatile long minInterval = 0;
+
+    private volatile long maxInterval = 1000;
+
+    private volatile double backOffMultiplier = 2;
+
+    private volatile long currentInterval;
+
+    private volatile boolean received;
+
+    public void setMinInterval(long minInterval) {
+        Assert.isTrue(minInterval >= 0, "the 'minInterval' can't be negative");
+        this.minInterval = minInterval;
+    }
+
+    public void setMaxInterval(long maxInterval) {
+        Assert.isTrue(maxInterval > 0, "the 'maxInterval' must be greater than zero");
+        this.maxInterval = maxInterval;
+    }
+
+    public void setBackOffMultiplier(double backOffMultiplier) {
+        Assert.isTrue(backOffMultiplier > 1, "the 'backOffMultiplier' must be greater than one");
+        this.backOffMultiplier = backOffMultiplier;
+    }
+
+    /**
+     * to be called whenever a poll receives a message
+     */
+    public void messageReceived() {
+        this.received = true;
+    }
+
+    /**
+     * @return the interval, in milliseconds, before the next poll
+     */
+    public long getCurrentInterval() {
+        return currentInterval;
+    }
+
+    public Date nextExecutionTime(TriggerContext triggerContext) {
+        Date lastCompletion = triggerContext.lastCompletionTime();
+        if (lastCompletion == null) {
+            return new Date();
+        }
+
+        long interval;
+        if (this.received) {
+            this.received = false;
+            interval = this.minInterval;
+        } else {
+            interval = Math.min(this.maxInterval, Math.max(1, (long) (this.currentInterval * this.backOffMultiplier)));
+        }
+        this.currentInterval = interval;
+        return new Date(lastCompletion.getTime() + interval);
+    }
+}
@@ -0,0 +1,261 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects {@link Message}s into batches and hands each batch to a {@link BatchHandler} on a dedicated worker thread.
+ * A batch is handed off as soon as it holds {@link #setBatchSize(int) batchSize} messages, or once
+ * {@link #setBatchTimeout(long) batchTimeout} milliseconds have passed since its first message arrived, whichever comes first.
+ * <p/>
+ * Messages are handled in the order in which they were added. The internal queue holds up to {@link #setCapacity(int) capacity}
+ * messages ({@link #DEFAULT_CAPACITY} by default); when it's full, {@link #add(Message)} blocks, which gives callers natural
+ * backpressure.
+ *
+ * @author Josh Long
+ */
+public class MessageBatcher implements InitializingBean, DisposableBean {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private Log log = LogFactory.getLog(getClass());
+
+    private final BatchHandler batchHandler;
+
+    private volatile int batchSize = 100;
+
+    private volatile long batchTimeout = 10;
+
+    private int capacity = DEFAULT_CAPACITY;
+
+    private String name = "messageBatcher";
+
+    private TaskExecutor taskExecutor;
+
+    private BlockingQueue<Message<?>> queue;
+
+    private volatile boolean running;
+
+    /**
+     * 1 while the worker loop is running. It's also the monitor that {@link #destroy()} waits on for the worker to stop.
+     */
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    /**
+     * callers that are inside {@link #add(Message)}, and may still put a message on the queue
+     */
+    private final AtomicInteger adding = new AtomicInteger();
+
+    public MessageBatcher(BatchHandler batchHandler) {
+        Assert.notNull(batchHandler, "the 'batchHandler' can't be null");
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * the most messages that will be handed to the {@link BatchHandler} at once
+     *
+     * @param batchSize the maximum batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * how long, in milliseconds, to wait for a batch to fill up once its first message has arrived
+     *
+     * @param batchTimeout the maximum wait
+     */
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * how many messages may be waiting before {@link #add(Message)} blocks. {@link #DEFAULT_CAPACITY} by default.
+     *
+     * @param capacity the queue capacity
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * used to name the worker thread, if no {@link #setTaskExecutor(TaskExecutor)} is given, and in log messages
+     *
+     * @param name the name of this batcher
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * the executor that runs the (long-lived) worker loop. By default, a dedicated thread is used.
+     *
+     * @param taskExecutor the executor
+     */
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * @return the number of messages waiting to be batched
+     */
+    public int getQueueSize() {
+        return this.queue == null ? 0 : this.queue.size();
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        Assert.isTrue(this.batchSize > 0, "the 'batchSize' must be greater than zero");
+        Assert.isTrue(this.batchTimeout >= 0, "the 'batchTimeout' can't be negative");
+        Assert.isTrue(this.capacity > 0, "the 'capacity' must be greater than zero");
+
+        if (this.taskExecutor == null) {
+            this.taskExecutor = new SimpleAsyncTaskExecutor(this.name + "-");
+        }
+
+        this.queue = new LinkedBlockingQueue<Message<?>>(this.capacity);
+        this.running = true;
+        this.taskExecutor.execute(new Runnable() {
+            public void run() {
+                drainLoop();
+            }
+        });
+    }
+
+    /**
+     * enqueues the message for the next batch, blocking while the queue is full
+     *
+     * @param message the message
+     */
+    public void add(Message<?> message) {
+        // counted before running is read, so that destroy() either sees this caller or this caller sees it's stopped
+        this.adding.incrementAndGet();
+        try {
+            if (!this.running) {
+                throw new MessageDeliveryException(message, "'" + this.name + "' is not running");
+            }
+            this.queue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageDeliveryException(message, "interrupted while waiting to enqueue the message on '" + this.name + "'");
+        } finally {
+            this.adding.decrementAndGet();
+        }
+    }
+
+    /**
+     * stops the worker loop, and waits for it to finish the batch it's handling. Any messages still waiting (including
+     * those of callers that were blocked in {@link #add(Message)}) are then handed off, in order, before this method returns.
+     */
+    public void destroy() throws Exception {
+        if (this.queue == null) {
+            return; // never started
+        }
+        this.running = false;
+        synchronized (this.activeWorkers) {
+            while (this.activeWorkers.get() > 0) {
+                this.activeWorkers.wait();
+            }
+        }
+
+        List<Message<?>> remaining = new ArrayList<Message<?>>();
+        while (true) {
+            this.queue.drainTo(remaining, this.batchSize);
+            if (!remaining.isEmpty()) {
+                handle(new ArrayList<Message<?>>(remaining));
+                remaining.clear();
+            } else if (this.adding.get() == 0 && this.queue.isEmpty()) {
+                return;
+            } else {
+                Thread.yield(); // a caller is still on its way into the queue
+            }
+        }
+    }
+
+    private void drainLoop() {
+        // counted before running is read, so that destroy() either waits for this worker or this worker sees it's stopped
+        this.activeWorkers.incrementAndGet();
+        try {
+            doDrainLoop();
+        } finally {
+            synchronized (this.activeWorkers) {
+                this.activeWorkers.decrementAndGet();
+                this.activeWorkers.notifyAll();
+            }
+        }
+    }
+
+    private void doDrainLoop() {
+        while (this.running) {
+            try {
+                Message<?> first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<Message<?>> batch = new ArrayList<Message<?>>(this.batchSize);
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - 1);
+
+                long deadline = System.currentTimeMillis() + this.batchTimeout;
+                while (batch.size() < this.batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Message<?> next = this.queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                }
+
+                handle(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void handle(List<Message<?>> batch) {
+        try {
+            this.batchHandler.handleBatch(batch);
+        } catch (Throwable t) {
+            log.error("exception thrown when handling a batch of " + batch.size() + " messages in '" + this.name + "'", t);
+        }
+    }
+
+    /**
+     * called with each batch of messages, in order, on the worker thread
+     */
+    public static interface BatchHandler {
+        void handleBatch(List<Message<?>> messages);
+    }
+}
@@ -0,0 +1,425 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for bursty traffic: {@link Message}s wait in a bounded queue, highest priority first (and first come,
+ * first served within a priority), and are handed to an {@link AdmissionHandler} by {@link #setConcurrency(int) concurrency}
+ * worker threads. If {@link #setPermitsPerSecond(double) permitsPerSecond} is set, every key (for example, a process
+ * definition key) gets its own {@link TokenBucket}, so no key is admitted faster than that. A message whose key is over
+ * its rate is set aside until the key's next permit is due, and then competes for admission again, so the workers are
+ * never tied up waiting on one busy key while the others queue behind it. Once there are more than
+ * {@link #TOKEN_BUCKET_SWEEP_THRESHOLD} keys, the buckets of keys that have been quiet long enough to fill up again are
+ * dropped, as a new bucket would be no different.
+ * <p/>
+ * When the queue is full, {@link #add(Message, String, int)} blocks, which pushes back on the callers. The queue depth
+ * and the time messages spend waiting are available as simple metrics.
+ *
+ * @author Josh Long
+ */
+public class PriorityAdmissionQueue implements InitializingBean, DisposableBean {
+
+    /**
+     * how many token buckets there may be before the full ones are swept out
+     */
+    static final int TOKEN_BUCKET_SWEEP_THRESHOLD = 1024;
+
+    private Log log = LogFactory.getLog(getClass());
+
+    private final AdmissionHandler admissionHandler;
+
+    private int capacity = 1000;
+
+    private double permitsPerSecond = 0;
+
+    private int burst = 0;
+
+    private int concurrency = 1;
+
+    private String name = "priorityAdmissionQueue";
+
+    private TaskExecutor taskExecutor;
+
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<Entry>();
+
+    /**
+     * messages whose key was over its rate, until the key's next permit is due
+     */
+    private final DelayQueue<Deferred> deferred = new DelayQueue<Deferred>();
+
+    private volatile Semaphore slots;
+
+    private final ConcurrentMap<String, TokenBucket> tokenBuckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean running;
+
+    /**
+     * the workers whose loop is running. It's also the monitor that {@link #destroy()} waits on for the workers to stop.
+     */
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    /**
+     * callers that are inside {@link #add(Message, String, int)}, and may still put a message on the queue
+     */
+    private final AtomicInteger adding = new AtomicInteger();
+
+    public PriorityAdmissionQueue(AdmissionHandler admissionHandler) {
+        Assert.notNull(admissionHandler, "the 'admissionHandler' can't be null");
+        this.admissionHandler = admissionHandler;
+    }
+
+    /**
+     * how many messages may be waiting before {@link #add(Message, String, int)} blocks
+     *
+     * @param capacity the queue capacity
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * how many messages per key may be admitted per second. Zero, the default, means there's no limit.
+     *
+     * @param permitsPerSecond the rate limit
+     */
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * how many messages per key may be admitted at once after a quiet spell. Defaults to one second's worth.
+     *
+     * @param burst the burst size
+     */
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * @return the number of messages waiting to be admitted
+     */
+    public int getQueueDepth() {
+        return this.queue.size() + this.deferred.size();
+    }
+
+    /**
+     * @return the number of messages admitted so far
+     */
+    public long getAdmittedCount() {
+        return this.admittedCount.get();
+    }
+
+    /**
+     * @return the average time, in milliseconds, that admitted messages spent waiting
+     */
+    public double getAverageWaitTime() {
+        long admitted = this.admittedCount.get();
+        return admitted == 0 ? 0 : (double) this.totalWaitNanos.get() / admitted / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the longest time, in milliseconds, that an admitted message spent waiting
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos.get());
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        Assert.isTrue(this.capacity > 0, "the 'capacity' must be greater than zero");
+        Assert.isTrue(this.permitsPerSecond >= 0, "the 'permitsPerSecond' can't be negative");
+        Assert.isTrue(this.concurrency > 0, "the 'concurrency' must be greater than zero");
+
+        if (this.burst <= 0) {
+            this.burst = Math.max(1, (int) Math.ceil(this.permitsPerSecond));
+        }
+        if (this.taskExecutor == null) {
+            this.taskExecutor = new SimpleAsyncTaskExecutor(this.name + "-");
+        }
+
+        this.slots = new Semaphore(this.capacity);
+        this.running = true;
+        for (int i = 0; i < this.concurrency; i++) {
+            this.taskExecutor.execute(new Runnable() {
+                public void run() {
+                    admitLoop();
+                }
+            });
+        }
+    }
+
+    /**
+     * enqueues the message, blocking while the queue is full. A message holds its place in the queue until it's admitted,
+     * even while it's set aside for its key's rate limit.
+     *
+     * @param message  the message
+     * @param key      the key whose rate limit applies to the message
+     * @param priority the priority. Higher priorities are admitted first.
+     */
+    public void add(Message<?> message, String key, int priority) {
+        // counted before running is read, so that destroy() either sees this caller or this caller sees it's stopped
+        this.adding.incrementAndGet();
+        try {
+            if (!this.running) {
+                throw new MessageDeliveryException(message, "'" + this.name + "' is not running");
+            }
+            this.slots.acquire();
+            this.queue.put(new Entry(message, key, priority, this.sequence.getAndIncrement()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageDeliveryException(message, "interrupted while waiting to enqueue the message on '" + this.name + "'");
+        } finally {
+            this.adding.decrementAndGet();
+        }
+    }
+
+    /**
+     * stops the workers, and waits for them to finish the messages they're admitting. Any messages still waiting (including
+     * those of callers that were blocked in {@link #add(Message, String, int)}) are then admitted, in priority order and
+     * without rate limiting, before this method returns.
+     */
+    public void destroy() throws Exception {
+        if (this.slots == null) {
+            return; // never started
+        }
+        this.running = false;
+        synchronized (this.activeWorkers) {
+            while (this.activeWorkers.get() > 0) {
+                this.activeWorkers.wait();
+            }
+        }
+
+        // only the workers set messages aside, so nothing's added here any more
+        for (Deferred deferred : this.deferred.toArray(new Deferred[this.deferred.size()])) {
+            this.queue.put(deferred.entry);
+        }
+        this.deferred.clear();
+
+        List<Entry> remaining = new ArrayList<Entry>();
+        while (true) {
+            this.queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                // admitting frees the slots that blocked callers are waiting on
+                Collections.sort(remaining);
+                for (Entry entry : remaining) {
+                    admit(entry);
+                }
+                remaining.clear();
+            } else if (this.adding.get() == 0 && this.queue.isEmpty()) {
+                return;
+            } else {
+                Thread.yield(); // a caller is still on its way into the queue
+            }
+        }
+    }
+
+    private void admitLoop() {
+        // counted before running is read, so that destroy() either waits for this worker or this worker sees it's stopped
+        this.activeWorkers.incrementAndGet();
+        try {
+            doAdmitLoop();
+        } finally {
+            synchronized (this.activeWorkers) {
+                this.activeWorkers.decrementAndGet();
+                this.activeWorkers.notifyAll();
+            }
+        }
+    }
+
+    private void doAdmitLoop() {
+        while (this.running) {
+            try {
+                Deferred due;
+                while ((due = this.deferred.poll()) != null) {
+                    this.queue.put(due.entry);
+                }
+
+                Entry entry = this.queue.poll(pollTimeout(), TimeUnit.NANOSECONDS);
+                if (entry == null) {
+                    continue;
+                }
+
+                if (this.permitsPerSecond > 0) {
+                    TokenBucket tokenBucket = tokenBucketFor(entry.key);
+                    if (!tokenBucket.tryAcquire()) {
+                        this.deferred.put(new Deferred(entry, System.nanoTime() + tokenBucket.timeToNextPermit()));
+                        continue;
+                    }
+                }
+                admit(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * how long to wait for a message: no longer than it takes for the next message that was set aside to be due
+     */
+    private long pollTimeout() {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(100);
+        Deferred next = this.deferred.peek();
+        return next == null ? timeout : Math.max(0, Math.min(timeout, next.getDelay(TimeUnit.NANOSECONDS)));
+    }
+
+    private TokenBucket tokenBucketFor(String key) {
+        String k = key == null ? "" : key;
+        TokenBucket tokenBucket = this.tokenBuckets.get(k);
+        if (tokenBucket == null) {
+            TokenBucket newTokenBucket = new TokenBucket(this.permitsPerSecond, this.burst);
+            tokenBucket = this.tokenBuckets.putIfAbsent(k, newTokenBucket);
+            if (tokenBucket == null) {
+                tokenBucket = newTokenBucket;
+                if (this.tokenBuckets.size() > TOKEN_BUCKET_SWEEP_THRESHOLD) {
+                    sweepTokenBuckets();
+                }
+            }
+        }
+        return tokenBucket;
+    }
+
+    /**
+     * drops the buckets that have filled up again, since the keys come from message headers and needn't ever repeat
+     */
+    private void sweepTokenBuckets() {
+        for (Map.Entry<String, TokenBucket> tokenBucket : this.tokenBuckets.entrySet()) {
+            if (tokenBucket.getValue().isFull()) {
+                this.tokenBuckets.remove(tokenBucket.getKey(), tokenBucket.getValue());
+            }
+        }
+    }
+
+    int getTokenBucketCount() {
+        return this.tokenBuckets.size();
+    }
+
+    private void admit(Entry entry) {
+        this.slots.release();
+
+        long waited = System.nanoTime() - entry.enqueuedAt;
+        this.admittedCount.incrementAndGet();
+        this.totalWaitNanos.addAndGet(waited);
+        long max = this.maxWaitNanos.get();
+        while (waited > max && !this.maxWaitNanos.compareAndSet(max, waited)) {
+            max = this.maxWaitNanos.get();
+        }
+
+        try {
+            this.admissionHandler.admit(entry.message);
+        } catch (Throwable t) {
+            log.error("exception thrown when admitting message " + entry.message.getHeaders().getId() + " in '" + this.name + "'", t);
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final Message<?> message;
+
+        private final String key;
+
+        private final int priority;
+
+        private final long sequence;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private Entry(Message<?> message, String key, int priority, long sequence) {
+            this.message = message;
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Entry other) {
+            if (this.priority != other.priority) {
+                return this.priority > other.priority ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * an entry that's been set aside until its key's next permit is due
+     */
+    private static class Deferred implements Delayed {
+
+        private final Entry entry;
+
+        private final long dueAt;
+
+        private Deferred(Entry entry, long dueAt) {
+            this.entry = entry;
+            this.dueAt = dueAt;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            long diff = this.dueAt - ((Deferred) other).dueAt;
+            return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+        }
+    }
+
+    /**
+     * called with each message, on a worker thread, once it's been admitted
+     */
+    public static interface AdmissionHandler {
+        void admit(Message<?> message);
+    }
+}
@@ -0,0 +1,114 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.util;
+
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A bounded, thread-safe set of recently seen keys. Keys are forgotten {@link #getTimeToLive() timeToLive} milliseconds after
+ * they were added, and, when there are more than {@link #getMaxSize() maxSize} keys, the expired keys (and then as many
+ * others as needed) are dropped to make room.
+ *
+ * @author Josh Long
+ */
+public class RecentKeyIndex {
+
+    private final ConcurrentMap<String, Long> expirations = new ConcurrentHashMap<String, Long>();
+
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    public RecentKeyIndex(int maxSize, long timeToLive) {
+        Assert.isTrue(maxSize > 0, "the 'maxSize' must be greater than zero");
+        Assert.isTrue(timeToLive > 0, "the 'timeToLive' must be greater than zero");
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * adds the key, unless it's already there
+     *
+     * @param key the key
+     * @return true if the key was added, false if it had been seen recently
+     */
+    public boolean add(String key) {
+        long now = System.currentTimeMillis();
+        Long expiration = now + this.timeToLive;
+
+        Long previous = this.expirations.putIfAbsent(key, expiration);
+        if (previous == null) {
+            if (this.expirations.size() > this.maxSize) {
+                trim(now);
+            }
+            return true;
+        }
+
+        // an expired key counts as absent, but only one caller gets to renew it
+        return previous <= now && this.expirations.replace(key, previous, expiration);
+    }
+
+    public boolean contains(String key) {
+        Long expiration = this.expirations.get(key);
+        return expiration != null && expiration > System.currentTimeMillis();
+    }
+
+    public void remove(String key) {
+        this.expirations.remove(key);
+    }
+
+    public int size() {
+        return this.expirations.size();
+    }
+
+    /**
+     * drops the expired keys and, if that's not enough, arbitrary others, until a tenth of the room is free again
+     */
+    private void trim(long now) {
+        if (!this.trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = this.maxSize - Math.max(1, this.maxSize / 10);
+
+            for (Iterator<Map.Entry<String, Long>> it = this.expirations.entrySet().iterator(); it.hasNext(); ) {
+                if (it.next().getValue() <= now) {
+                    it.remove();
+                }
+            }
+
+            for (Iterator<String> it = this.expirations.keySet().iterator(); it.hasNext() && this.expirations.size() > target; ) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            this.trimming.set(false);
+        }
+    }
+}
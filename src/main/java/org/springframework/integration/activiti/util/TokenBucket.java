@@ -0,0 +1,79 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.activiti.util;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket: permits are handed out at a steady {@code permitsPerSecond}, and up to {@code burst} unused permits
+ * can be saved up to absorb short spikes.
+ *
+ * @author Josh Long
+ */
+public class TokenBucket {
+
+    private final double permitsPerNanosecond;
+
+    private final double burst;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        Assert.isTrue(permitsPerSecond > 0, "the 'permitsPerSecond' must be greater than zero");
+        Assert.isTrue(burst > 0, "the 'burst' must be greater than zero");
+        this.permitsPerNanosecond = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * takes a permit if one is available right now
+     *
+     * @return true if a permit was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return how long, in nanoseconds, until a permit is available. Zero if there's one now.
+     */
+    public synchronized long timeToNextPermit() {
+        refill();
+        return this.tokens >= 1 ? 0 : (long) Math.ceil((1 - this.tokens) / this.permitsPerNanosecond);
+    }
+
+    /**
+     * @return true if every permit has been saved up, so the bucket is no different from a new one
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return this.tokens >= this.burst;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.burst, this.tokens + (now - this.lastRefill) * this.permitsPerNanosecond);
+        this.lastRefill = now;
+    }
+}
@@ -0,0 +1,64 @@
+package org.springframework.integration.activiti;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * tests the signalling support in {@link ProcessSupport}
+ *
+ * @author Josh Long
+ */
+public class ProcessSupportTest {
+    private ActivityExecution activityExecution;
+    private ProcessEngine processEngine;
+    private DefaultProcessVariableHeaderMapper processVariableHeaderMapper;
+
+    @Before
+    public void begin() throws Throwable {
+        this.processEngine = mock(ProcessEngine.class);
+        this.activityExecution = mock(ActivityExecution.class);
+        this.processVariableHeaderMapper = new DefaultProcessVariableHeaderMapper(this.activityExecution);
+        this.processVariableHeaderMapper.setHeaderToProcessVariableNames("customer*");
+        this.processVariableHeaderMapper.afterPropertiesSet();
+    }
+
+    @Test
+    public void testBulkCallbackReceivesAllVariablesAtOnce() throws Throwable {
+        Message<?> reply = MessageBuilder.withPayload("reply")
+                                   .setHeader("customerId", 232)
+                                   .setHeader("customerName", "Josh")
+                                   .setHeader("food", "donuts")
+                                   .build();
+
+        CountingCallback callback = new CountingCallback();
+        ProcessSupport.signalProcessExecution(this.processEngine, "executionId", callback, this.processVariableHeaderMapper, reply);
+
+        assertEquals(1, callback.invocations);
+        assertEquals("executionId", callback.executionId);
+        assertEquals(2, callback.processVariables.size());
+        assertEquals(232, callback.processVariables.get("customerId"));
+        assertEquals("Josh", callback.processVariables.get("customerName"));
+    }
+
+    static class CountingCallback implements ProcessSupport.BulkProcessExecutionSignallerCallback {
+        int invocations;
+        String executionId;
+        Map<String, Object> processVariables;
+
+        public void setProcessVariablesAndSignal(ProcessEngine en, String executionId, Map<String, Object> processVariables) {
+            this.invocations++;
+            this.executionId = executionId;
+            this.processVariables = processVariables;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.activiti.engine.repository.ProcessDefinitionQuery;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that {@link ProcessDefinitionCache} only asks the engine on a miss, and that a start by a cached id is only
+ * retried by key when that id has been undeployed
+ *
+ * @author Josh Long
+ */
+public class ProcessDefinitionCacheTest {
+    private ProcessEngine processEngine;
+    private RepositoryService repositoryService;
+    private ProcessDefinitionQuery query;
+    private ProcessDefinition processDefinition;
+
+    @Before
+    public void begin() throws Throwable {
+        this.processEngine = mock(ProcessEngine.class);
+        this.repositoryService = mock(RepositoryService.class);
+        this.query = mock(ProcessDefinitionQuery.class);
+        this.processDefinition = mock(ProcessDefinition.class);
+
+        when(this.processEngine.getRepositoryService()).thenReturn(this.repositoryService);
+        when(this.repositoryService.createProcessDefinitionQuery()).thenReturn(this.query);
+        when(this.query.processDefinitionKey("hello")).thenReturn(this.query);
+        when(this.query.latestVersion()).thenReturn(this.query);
+        when(this.query.singleResult()).thenReturn(this.processDefinition);
+        when(this.processDefinition.getId()).thenReturn("hello:1:5");
+    }
+
+    @Test
+    public void testResolvesOnlyOnce() throws Throwable {
+        ProcessDefinitionCache cache = new ProcessDefinitionCache();
+        assertEquals("hello:1:5", cache.getProcessDefinitionId(this.processEngine, "hello"));
+        assertEquals("hello:1:5", cache.getProcessDefinitionId(this.processEngine, "hello"));
+        verify(this.query, times(1)).singleResult();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEviction() throws Throwable {
+        ProcessDefinitionCache cache = new ProcessDefinitionCache();
+        cache.getProcessDefinitionId(this.processEngine, "hello");
+        cache.evict("hello");
+
+        when(this.processDefinition.getId()).thenReturn("hello:2:9");
+        assertEquals("hello:2:9", cache.getProcessDefinitionId(this.processEngine, "hello"));
+        verify(this.query, times(2)).singleResult();
+    }
+
+    @Test
+    public void testDisabled() throws Throwable {
+        ProcessDefinitionCache cache = new ProcessDefinitionCache();
+        cache.setTimeout(0);
+        cache.getProcessDefinitionId(this.processEngine, "hello");
+        cache.getProcessDefinitionId(this.processEngine, "hello");
+        verify(this.query, times(2)).singleResult();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRetriesByKeyWhenUndeployed() throws Throwable {
+        RuntimeService runtimeService = startFailingById(0);
+        ProcessInstance processInstance = mock(ProcessInstance.class);
+        when(runtimeService.startProcessInstanceByKey(anyString(), (Map<String, Object>) anyMap())).thenReturn(processInstance);
+
+        ProcessDefinitionCache cache = new ProcessDefinitionCache();
+        assertSame(processInstance, ProcessStartSupport.startProcessInstance(this.processEngine, cache, request(cache)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRethrowsOtherFailures() throws Throwable {
+        RuntimeService runtimeService = startFailingById(1);
+
+        ProcessDefinitionCache cache = new ProcessDefinitionCache();
+        try {
+            ProcessStartSupport.startProcessInstance(this.processEngine, cache, request(cache));
+            fail("the process' own failure should have been rethrown");
+        } catch (ActivitiException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        verify(runtimeService, never()).startProcessInstanceByKey(anyString(), (Map<String, Object>) anyMap());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * makes starts by id fail, with the definition still deployed {@code count} times
+     */
+    @SuppressWarnings("unchecked")
+    private RuntimeService startFailingById(long count) {
+        RuntimeService runtimeService = mock(RuntimeService.class);
+        when(this.processEngine.getRuntimeService()).thenReturn(runtimeService);
+        when(runtimeService.startProcessInstanceById(anyString(), (Map<String, Object>) anyMap())).thenThrow(new ActivitiException("boom"));
+        when(this.query.processDefinitionId("hello:1:5")).thenReturn(this.query);
+        when(this.query.count()).thenReturn(count);
+        return runtimeService;
+    }
+
+    private ProcessStartRequest request(ProcessDefinitionCache cache) {
+        return new ProcessStartRequest(MessageBuilder.withPayload("start").build(), "hello",
+                                              cache.getProcessDefinitionId(this.processEngine, "hello"), null, new HashMap<String, Object>());
+    }
+}
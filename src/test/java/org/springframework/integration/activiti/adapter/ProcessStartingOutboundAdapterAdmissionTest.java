@@ -0,0 +1,72 @@
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that {@link ProcessStartingOutboundChannelAdapter} admits messages through its admission queue, whatever their
+ * priority header holds
+ *
+ * @author Josh Long
+ */
+public class ProcessStartingOutboundAdapterAdmissionTest {
+    private QueueChannel replies;
+    private ProcessStartingOutboundChannelAdapter adapter;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void begin() throws Throwable {
+        ProcessEngine processEngine = mock(ProcessEngine.class);
+        RuntimeService runtimeService = mock(RuntimeService.class);
+        ProcessInstance processInstance = mock(ProcessInstance.class);
+        when(processEngine.getRuntimeService()).thenReturn(runtimeService);
+        when(processInstance.getId()).thenReturn("101");
+        when(processInstance.getProcessDefinitionId()).thenReturn("hello:1:5");
+        when(runtimeService.startProcessInstanceByKey(eq("hello"), (Map<String, Object>) anyMap())).thenReturn(processInstance);
+
+        DefaultProcessVariableHeaderMapper headerMapper = new DefaultProcessVariableHeaderMapper();
+        headerMapper.afterPropertiesSet();
+
+        this.replies = new QueueChannel();
+        this.adapter = new ProcessStartingOutboundChannelAdapter();
+        this.adapter.setProcessEngine(processEngine);
+        this.adapter.setProcessDefinitionName("hello");
+        this.adapter.setProcessVariableHeaderMapper(headerMapper);
+        this.adapter.setAdmissionQueueCapacity(10);
+        this.adapter.setReplyChannel(this.replies);
+        this.adapter.afterPropertiesSet();
+    }
+
+    @After
+    public void end() throws Exception {
+        this.adapter.destroy();
+    }
+
+    @Test
+    public void testPriorities() throws Throwable {
+        this.adapter.handleMessage(MessageBuilder.withPayload("numeric").setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY, 5).build());
+        this.adapter.handleMessage(MessageBuilder.withPayload("text").setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY, "5").build());
+        // not a number, so it gets the default priority rather than failing the send
+        this.adapter.handleMessage(MessageBuilder.withPayload("malformed").setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_START_PRIORITY_HEADER_KEY, "urgent").build());
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(this.replies.receive(5000));
+        }
+    }
+}
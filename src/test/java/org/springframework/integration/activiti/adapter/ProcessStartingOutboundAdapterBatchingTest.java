@@ -0,0 +1,151 @@
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * tests that {@link ProcessStartingOutboundChannelAdapter} starts batches of process instances together, and falls back
+ * to starting each on its own when a batch fails
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("ProcessStartingOutboundChannelAdapterTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ProcessStartingOutboundAdapterBatchingTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    private static final String PROCESS = "batchedStart";
+
+    private static final String FAIL = "fail";
+
+    @Autowired ProcessEngine pe;
+
+    private QueueChannel replies;
+
+    private QueueChannel errors;
+
+    private ProcessStartingOutboundChannelAdapter adapter;
+
+    @Before
+    public void begin() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/batched_starts.bpmn20.xml").deploy();
+        this.replies = new QueueChannel();
+        this.errors = new QueueChannel();
+    }
+
+    @After
+    public void end() throws Exception {
+        if (this.adapter != null) {
+            this.adapter.destroy();
+        }
+        for (ProcessInstance pi : pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).list()) {
+            pe.getRuntimeService().deleteProcessInstance(pi.getId(), "test over");
+        }
+    }
+
+    @Test
+    public void testStartsAFullBatch() throws Throwable {
+        // the batch timeout is far off, so the replies can only come from the batch filling up
+        this.adapter = batchingAdapter(3, 60 * 1000);
+        for (int i = 0; i < 3; i++) {
+            this.adapter.handleMessage(trigger(false));
+        }
+
+        Set<String> processInstanceIds = new HashSet<String>();
+        for (int i = 0; i < 3; i++) {
+            Message<?> reply = this.replies.receive(5000);
+            assertNotNull(reply);
+            processInstanceIds.add((String) reply.getPayload());
+        }
+        assertEquals(3, processInstanceIds.size());
+        assertEquals(3, running());
+        assertNull(this.errors.receive(0));
+    }
+
+    @Test
+    public void testStartsAPartialBatchOnTimeout() throws Throwable {
+        this.adapter = batchingAdapter(3, 100);
+        this.adapter.handleMessage(trigger(false));
+
+        assertNotNull(this.replies.receive(5000));
+        assertEquals(1, running());
+    }
+
+    @Test
+    public void testFallsBackToOneStartPerMessage() throws Throwable {
+        this.adapter = batchingAdapter(3, 60 * 1000);
+        Message<?> bad = trigger(true);
+        this.adapter.handleMessage(trigger(false));
+        this.adapter.handleMessage(bad);
+        this.adapter.handleMessage(trigger(false));
+
+        // the failed batch was rolled back, and the good messages were started again, one at a time
+        assertNotNull(this.replies.receive(5000));
+        assertNotNull(this.replies.receive(5000));
+        Message<?> error = this.errors.receive(5000);
+        assertNotNull(error);
+        assertEquals(bad.getHeaders().getId(), ((MessagingException) error.getPayload()).getFailedMessage().getHeaders().getId());
+        assertNull(this.replies.receive(100));
+        assertEquals(2, running());
+    }
+
+    private ProcessStartingOutboundChannelAdapter batchingAdapter(int batchSize, long batchTimeout) throws Exception {
+        DefaultProcessVariableHeaderMapper headerMapper = new DefaultProcessVariableHeaderMapper();
+        headerMapper.setHeaderToProcessVariableNames(FAIL);
+        headerMapper.afterPropertiesSet();
+
+        ProcessStartingOutboundChannelAdapter adapter = new ProcessStartingOutboundChannelAdapter();
+        adapter.setProcessEngine(pe);
+        adapter.setProcessDefinitionName(PROCESS);
+        adapter.setProcessVariableHeaderMapper(headerMapper);
+        adapter.setBatchSize(batchSize);
+        adapter.setBatchTimeout(batchTimeout);
+        adapter.setReplyChannel(this.replies);
+        adapter.setErrorChannel(this.errors);
+        adapter.afterPropertiesSet();
+        return adapter;
+    }
+
+    private static Message<?> trigger(boolean fail) {
+        return MessageBuilder.withPayload("start").setHeader(FAIL, fail).build();
+    }
+
+    private long running() {
+        return pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).count();
+    }
+
+    /**
+     * fails the start of any process instance whose "fail" variable is set
+     */
+    public static class FailOnRequest implements JavaDelegate {
+
+        public void execute(DelegateExecution execution) throws Exception {
+            if (Boolean.TRUE.equals(execution.getVariable(FAIL))) {
+                throw new ActivitiException("failing the start of process instance " + execution.getProcessInstanceId() + ", as asked");
+            }
+        }
+    }
+}
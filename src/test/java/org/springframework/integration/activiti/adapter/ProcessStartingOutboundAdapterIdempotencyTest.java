@@ -0,0 +1,103 @@
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * tests that an idempotent {@link ProcessStartingOutboundChannelAdapter} discards messages whose business key has already
+ * started a process instance, whether that instance is still running or has ended, and whether the adapter remembers it
+ * or not
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("ProcessStartingOutboundChannelAdapterTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ProcessStartingOutboundAdapterIdempotencyTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    private static final String PROCESS = "batchedStart";
+
+    @Autowired ProcessEngine pe;
+
+    private QueueChannel replies;
+
+    private QueueChannel discards;
+
+    @Before
+    public void begin() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/batched_starts.bpmn20.xml").deploy();
+        this.replies = new QueueChannel();
+        this.discards = new QueueChannel();
+    }
+
+    @After
+    public void end() throws Exception {
+        for (ProcessInstance pi : pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).list()) {
+            pe.getRuntimeService().deleteProcessInstance(pi.getId(), "test over");
+        }
+    }
+
+    @Test
+    public void testDiscardsRecentDuplicates() throws Throwable {
+        ProcessStartingOutboundChannelAdapter adapter = idempotentAdapter();
+        adapter.handleMessage(trigger("order-1"));
+        adapter.handleMessage(trigger("order-1"));
+        adapter.handleMessage(trigger("order-2"));
+
+        assertNotNull(this.replies.receive(0));
+        assertNotNull(this.replies.receive(0));
+        assertNull(this.replies.receive(0));
+        assertEquals("order-1", this.discards.receive(0).getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY));
+        assertEquals(2, pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).count());
+    }
+
+    @Test
+    public void testDiscardsDuplicatesOfEndedProcessInstances() throws Throwable {
+        idempotentAdapter().handleMessage(trigger("order-3"));
+        Message<?> reply = this.replies.receive(0);
+        assertNotNull(reply);
+        pe.getRuntimeService().signal((String) reply.getPayload());
+        assertEquals(0, pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).count());
+
+        // a new adapter (after a restart, say) hasn't seen the business key, so only the history can tell it's a duplicate
+        idempotentAdapter().handleMessage(trigger("order-3"));
+        assertNull(this.replies.receive(0));
+        assertNotNull(this.discards.receive(0));
+        assertEquals(0, pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS).count());
+    }
+
+    private ProcessStartingOutboundChannelAdapter idempotentAdapter() throws Exception {
+        DefaultProcessVariableHeaderMapper headerMapper = new DefaultProcessVariableHeaderMapper();
+        headerMapper.afterPropertiesSet();
+
+        ProcessStartingOutboundChannelAdapter adapter = new ProcessStartingOutboundChannelAdapter();
+        adapter.setProcessEngine(pe);
+        adapter.setProcessDefinitionName(PROCESS);
+        adapter.setProcessVariableHeaderMapper(headerMapper);
+        adapter.setIdempotent(true);
+        adapter.setReplyChannel(this.replies);
+        adapter.setDiscardChannel(this.discards);
+        adapter.afterPropertiesSet();
+        return adapter;
+    }
+
+    private static Message<?> trigger(String businessKey) {
+        return MessageBuilder.withPayload("start").setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY, businessKey).build();
+    }
+}
@@ -0,0 +1,78 @@
+package org.springframework.integration.activiti.adapter;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that {@link ProcessStartingOutboundGateway} replies with the process instance it started
+ *
+ * @author Josh Long
+ */
+public class ProcessStartingOutboundGatewayTest {
+    private ProcessEngine processEngine;
+    private RuntimeService runtimeService;
+    private ProcessInstance processInstance;
+    private QueueChannel replies;
+    private ProcessStartingOutboundGateway gateway;
+
+    @Before
+    public void begin() throws Throwable {
+        this.processEngine = mock(ProcessEngine.class);
+        this.runtimeService = mock(RuntimeService.class);
+        this.processInstance = mock(ProcessInstance.class);
+        when(this.processEngine.getRuntimeService()).thenReturn(this.runtimeService);
+        when(this.processInstance.getId()).thenReturn("101");
+        when(this.processInstance.getProcessDefinitionId()).thenReturn("hello:1:5");
+        when(this.processInstance.getBusinessKey()).thenReturn("order-1");
+
+        DefaultProcessVariableHeaderMapper headerMapper = new DefaultProcessVariableHeaderMapper();
+        headerMapper.setHeaderToProcessVariableNames("customer*");
+        headerMapper.afterPropertiesSet();
+
+        ProcessDefinitionCache processDefinitionCache = new ProcessDefinitionCache();
+        processDefinitionCache.setTimeout(0);
+
+        this.replies = new QueueChannel();
+        this.gateway = new ProcessStartingOutboundGateway();
+        this.gateway.setProcessEngine(this.processEngine);
+        this.gateway.setProcessDefinitionName("hello");
+        this.gateway.setProcessVariableHeaderMapper(headerMapper);
+        this.gateway.setProcessDefinitionCache(processDefinitionCache);
+        this.gateway.setOutputChannel(this.replies);
+        this.gateway.afterPropertiesSet();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRepliesWithTheProcessInstance() throws Throwable {
+        when(this.runtimeService.startProcessInstanceByKey(eq("hello"), eq("order-1"), (Map<String, Object>) anyMap())).thenReturn(this.processInstance);
+
+        this.gateway.handleMessage(MessageBuilder.withPayload("order")
+                                           .setHeader("customerId", 232)
+                                           .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY, "order-1")
+                                           .build());
+
+        Message<?> reply = this.replies.receive(0);
+        assertEquals("101", reply.getPayload());
+        assertEquals("101", reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY));
+        assertEquals("hello:1:5", reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_ID_HEADER_KEY));
+        assertEquals("order-1", reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_BUSINESS_KEY_HEADER_KEY));
+        assertEquals(false, reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY));
+    }
+}
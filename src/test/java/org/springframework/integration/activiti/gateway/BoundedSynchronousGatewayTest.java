@@ -0,0 +1,134 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * tests the reply timeout, the concurrency cap and the degrade-to-wait-state behaviour of the {@link SyncActivityBehaviorMessagingGateway}
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("BoundedSynchronousGatewayTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class BoundedSynchronousGatewayTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    private BoundedSynchronousGatewayTestConfiguration.Responder responder;
+
+    @Before
+    public void deploy() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/bounded_sync_gateway.bpmn20.xml").deploy();
+        this.responder.reset();
+    }
+
+    private ProcessInstance start(String processDefinitionKey, String mode) {
+        return pe.getRuntimeService().startProcessInstanceByKey(processDefinitionKey,
+                                                                       Collections.<String, Object>singletonMap(BoundedSynchronousGatewayTestConfiguration.MODE, mode));
+    }
+
+    private boolean isRunning(ProcessInstance processInstance) {
+        return pe.getRuntimeService().createProcessInstanceQuery().processInstanceId(processInstance.getId()).count() > 0;
+    }
+
+    private static <T extends Throwable> T cause(Throwable t, Class<T> type) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * starts a process on another thread, whose request holds on to the gateway's only permit until the responder releases it
+     */
+    private Thread holdThePermit(final String processDefinitionKey, final AtomicReference<ProcessInstance> held) throws InterruptedException {
+        Thread holder = new Thread(new Runnable() {
+            public void run() {
+                held.set(start(processDefinitionKey, "hold"));
+            }
+        });
+        holder.start();
+        assertTrue(this.responder.awaitHolding());
+        return holder;
+    }
+
+    @Test
+    public void testReplyTimeout() throws Throwable {
+        long start = System.currentTimeMillis();
+        try {
+            start("boundedGateway", "silent");
+            fail("the activity should have failed when no reply arrived");
+        } catch (RuntimeException e) {
+            assertNotNull(cause(e, MessageTimeoutException.class));
+        }
+        assertTrue(System.currentTimeMillis() - start < BoundedSynchronousGatewayTestConfiguration.REPLY_TIMEOUT * 10);
+    }
+
+    @Test
+    public void testConcurrencyCap() throws Throwable {
+        AtomicReference<ProcessInstance> held = new AtomicReference<ProcessInstance>();
+        Thread holder = holdThePermit("boundedGateway", held);
+
+        try {
+            start("boundedGateway", "reply");
+            fail("the request beyond the cap should have been rejected");
+        } catch (RuntimeException e) {
+            MessageRejectedException rejected = cause(e, MessageRejectedException.class);
+            assertNotNull(rejected);
+            // turning the request away shouldn't have cost a full request message, with its process variables
+            assertTrue(rejected.getFailedMessage().getPayload() instanceof String);
+        }
+
+        this.responder.release();
+        holder.join(10000);
+        assertTrue("the request holding the permit should still have completed", held.get().isEnded());
+
+        // the permit's been given back
+        assertTrue(start("boundedGateway", "reply").isEnded());
+    }
+
+    @Test
+    public void testDegradeToWaitState() throws Throwable {
+        AtomicReference<ProcessInstance> held = new AtomicReference<ProcessInstance>();
+        Thread holder = holdThePermit("degradingGateway", held);
+
+        ProcessInstance degraded = start("degradingGateway", "queue");
+        assertFalse("the request beyond the cap should have become a wait state", degraded.isEnded());
+
+        Message<?> request = this.responder.getQueued().receive(5000);
+        assertNotNull(request);
+        assertTrue(BoundedSynchronousGatewayTestConfiguration.Responder.reply(request));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (isRunning(degraded) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse("the reply should have signalled the wait state", isRunning(degraded));
+
+        this.responder.release();
+        holder.join(10000);
+        assertTrue(held.get().isEnded());
+    }
+}
@@ -0,0 +1,126 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.CommonConfiguration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two synchronous gateways with a reply timeout and a cap of one concurrent request, for {@link BoundedSynchronousGatewayTest}:
+ * one fails requests beyond the cap, the other degrades them to wait states. How a request is answered depends on its
+ * process' "mode" variable (see {@link Responder}).
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class BoundedSynchronousGatewayTestConfiguration extends CommonConfiguration {
+
+    static final String MODE = "mode";
+
+    static final long REPLY_TIMEOUT = 500;
+
+    @Bean
+    public Responder responder() {
+        return new Responder();
+    }
+
+    @Bean
+    public DirectChannel boundedRequests() {
+        DirectChannel requests = new DirectChannel();
+        requests.subscribe(responder());
+        return requests;
+    }
+
+    @Bean
+    public SyncActivityBehaviorMessagingGateway boundedGateway() throws Exception {
+        return configure(new SyncActivityBehaviorMessagingGateway());
+    }
+
+    @Bean
+    public SyncActivityBehaviorMessagingGateway degradingGateway() throws Exception {
+        SyncActivityBehaviorMessagingGateway gateway = configure(new SyncActivityBehaviorMessagingGateway());
+        gateway.setDegradeToWaitState(true);
+        return gateway;
+    }
+
+    private SyncActivityBehaviorMessagingGateway configure(SyncActivityBehaviorMessagingGateway gateway) throws Exception {
+        gateway.setProcessEngine(this.processEngine().getObject());
+        gateway.setRequestChannel(boundedRequests());
+        gateway.setReplyChannel(new DirectChannel());
+        gateway.setReplyTimeout(REPLY_TIMEOUT);
+        gateway.setMaxConcurrentRequests(1);
+        return gateway;
+    }
+
+    /**
+     * answers a request according to its process' mode: "reply" answers right away, "hold" answers once
+     * {@link #release()} is called, "silent" never answers, and "queue" leaves the request on {@link #getQueued()}
+     */
+    public static class Responder implements MessageHandler {
+
+        private volatile CountDownLatch holding;
+
+        private volatile CountDownLatch released;
+
+        private final QueueChannel queued = new QueueChannel();
+
+        public Responder() {
+            reset();
+        }
+
+        public void handleMessage(Message<?> request) throws MessagingException {
+            Object mode = ((ExecutionSnapshot) request.getPayload()).getVariables().get(MODE);
+            if ("silent".equals(mode)) {
+                return;
+            }
+            if ("queue".equals(mode)) {
+                this.queued.send(request);
+                return;
+            }
+            if ("hold".equals(mode)) {
+                CountDownLatch released = this.released;
+                this.holding.countDown();
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            reply(request);
+        }
+
+        static boolean reply(Message<?> request) {
+            return ((MessageChannel) request.getHeaders().getReplyChannel()).send(
+                    MessageBuilder.withPayload("reply").copyHeaders(request.getHeaders()).build());
+        }
+
+        /**
+         * gets ready for the next held request
+         */
+        void reset() {
+            this.holding = new CountDownLatch(1);
+            this.released = new CountDownLatch(1);
+        }
+
+        boolean awaitHolding() throws InterruptedException {
+            return this.holding.await(10, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            this.released.countDown();
+        }
+
+        QueueChannel getQueued() {
+            return this.queued;
+        }
+    }
+}
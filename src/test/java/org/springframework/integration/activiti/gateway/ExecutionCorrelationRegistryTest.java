@@ -0,0 +1,87 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that {@link ExecutionCorrelationRegistry} tells expected, duplicate and unknown replies apart
+ *
+ * @author Josh Long
+ */
+public class ExecutionCorrelationRegistryTest {
+
+    @Test
+    public void testClaims() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry();
+        registry.register("101", "wait");
+        assertEquals(1, registry.size());
+
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", "wait"));
+        assertEquals(ExecutionCorrelationRegistry.Claim.DUPLICATE, registry.claim("101", "wait"));
+        assertEquals(ExecutionCorrelationRegistry.Claim.UNKNOWN, registry.claim("102", "wait"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testReleaseAndUnregister() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry();
+        registry.register("101", "wait");
+        registry.claim("101", "wait");
+        registry.release("101", "wait");
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", "wait"));
+
+        registry.register("102", "wait");
+        registry.unregister("102", "wait");
+        assertEquals(ExecutionCorrelationRegistry.Claim.UNKNOWN, registry.claim("102", "wait"));
+    }
+
+    @Test
+    public void testSequentialWaitStates() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry();
+        registry.register("101", "first");
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", "first"));
+
+        // the same execution moves on to the next gateway; a late duplicate for the first mustn't signal it
+        registry.register("101", "second");
+        assertEquals(ExecutionCorrelationRegistry.Claim.DUPLICATE, registry.claim("101", "first"));
+        assertEquals(1, registry.size());
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", "second"));
+
+        // a rollback of the first wait state doesn't forget the second
+        registry.register("102", "second");
+        assertEquals(false, registry.unregister("102", "first"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testRegisteringAgainIsNotNew() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry();
+        assertTrue(registry.register("101", "first"));
+        assertFalse(registry.register("101", "second"));
+        assertEquals(1, registry.size());
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", "second"));
+    }
+
+    @Test
+    public void testRepliesWithoutActivityId() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry();
+        registry.register("101", "wait");
+        assertEquals(ExecutionCorrelationRegistry.Claim.CLAIMED, registry.claim("101", null));
+        assertEquals(ExecutionCorrelationRegistry.Claim.DUPLICATE, registry.claim("101", null));
+    }
+
+    @Test
+    public void testOutstandingExecutionsAreBounded() throws Throwable {
+        ExecutionCorrelationRegistry registry = new ExecutionCorrelationRegistry(10, 60 * 1000, 10, 60 * 1000);
+        int forgotten = 0;
+        for (int i = 0; i < 25; i++) {
+            assertTrue(registry.register(Integer.toString(i), "wait"));
+            forgotten += registry.trim();
+        }
+        assertTrue(registry.size() <= 10);
+        assertEquals(25, registry.size() + forgotten);
+    }
+}
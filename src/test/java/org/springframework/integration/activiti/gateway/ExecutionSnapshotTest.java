@@ -0,0 +1,64 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.impl.pvm.PvmActivity;
+import org.activiti.engine.impl.pvm.delegate.ActivityExecution;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that an {@link ExecutionSnapshot} copies what it needs from the execution, and survives serialization
+ *
+ * @author Josh Long
+ */
+public class ExecutionSnapshotTest {
+
+    @Test
+    public void testSnapshot() throws Throwable {
+        ActivityExecution execution = mock(ActivityExecution.class);
+        PvmActivity activity = mock(PvmActivity.class);
+        when(execution.getId()).thenReturn("101");
+        when(execution.getProcessInstanceId()).thenReturn("100");
+        when(execution.getActivity()).thenReturn(activity);
+        when(activity.getId()).thenReturn("sigw");
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("customerId", 232);
+
+        Object payload = new ExecutionSnapshotPayloadStrategy().createPayload(execution, variables);
+        variables.put("customerId", 233);
+
+        ExecutionSnapshot snapshot = (ExecutionSnapshot) payload;
+        assertEquals("101", snapshot.getExecutionId());
+        assertEquals("100", snapshot.getProcessInstanceId());
+        assertEquals("sigw", snapshot.getActivityId());
+        assertEquals(232, snapshot.getVariables().get("customerId"));
+        try {
+            snapshot.getVariables().put("customerId", 234);
+            fail("the variables should be read only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(snapshot);
+        out.close();
+        ExecutionSnapshot copy = (ExecutionSnapshot) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals("101", copy.getExecutionId());
+        assertEquals(232, copy.getVariables().get("customerId"));
+
+        assertSame(execution, new LiveExecutionPayloadStrategy().createPayload(execution, variables));
+    }
+}
@@ -0,0 +1,168 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ProcessEngine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundChannelAdapter;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load driver, rather than a test: it deploys a process with {@link #GATEWAY_TASKS} asynchronous gateway service tasks in
+ * a row, starts {@link #INSTANCES} instances of it from {@link #THREADS} threads through the
+ * {@link ProcessStartingOutboundChannelAdapter}, answers every request after {@link #REPLY_LATENCY} milliseconds, and, once
+ * every instance is done (or {@link #TIMEOUT} seconds have passed), logs the throughput, the p50 and p99 time each
+ * execution spent waiting, and the optimistic locking collisions.
+ * <p/>
+ * It only runs when the <code>activiti.loadTest</code> system property is true, e.g.
+ * <code>mvn test -Dtest=GatewayLoadTest -Dactiviti.loadTest=true -Dactiviti.loadTest.instances=5000</code>
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("GatewayLoadTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class GatewayLoadTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    public static final String ENABLED = "activiti.loadTest";
+
+    public static final String GATEWAY_TASKS = "activiti.loadTest.gatewayTasks";
+
+    public static final String INSTANCES = "activiti.loadTest.instances";
+
+    public static final String THREADS = "activiti.loadTest.threads";
+
+    public static final String REPLY_LATENCY = "activiti.loadTest.replyLatency";
+
+    public static final String RESPONDERS = "activiti.loadTest.responders";
+
+    public static final String TIMEOUT = "activiti.loadTest.timeout";
+
+    static final String PROCESS_DEFINITION_KEY = "gatewayLoadTest";
+
+    private Log log = LogFactory.getLog(getClass());
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    private ProcessStartingOutboundChannelAdapter loadTestAdapter;
+
+    @Autowired
+    private AsyncActivityBehaviorMessagingGateway loadTestGateway;
+
+    @Autowired
+    private GatewayLoadTestConfiguration.Responder responder;
+
+    @BeforeClass
+    public static void onlyWhenEnabled() {
+        Assume.assumeTrue(Boolean.getBoolean(ENABLED));
+    }
+
+    @After
+    public void shutdownResponder() {
+        this.responder.shutdown();
+    }
+
+    @Test
+    public void testLoad() throws Throwable {
+        int gatewayTasks = Integer.getInteger(GATEWAY_TASKS, 3);
+        int instances = Integer.getInteger(INSTANCES, 1000);
+        int threads = Integer.getInteger(THREADS, 8);
+        long timeout = Long.getLong(TIMEOUT, 300) * 1000;
+
+        pe.getRepositoryService().createDeployment().addString(PROCESS_DEFINITION_KEY + ".bpmn20.xml", processDefinition(gatewayTasks)).deploy();
+
+        final AtomicLong startFailures = new AtomicLong();
+        final CountDownLatch started = new CountDownLatch(threads);
+        final Message<String> trigger = MessageBuilder.withPayload("start").build();
+        List<Thread> starters = new ArrayList<Thread>();
+        long begin = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            final int share = instances / threads + (t < instances % threads ? 1 : 0);
+            Thread starter = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < share; i++) {
+                            try {
+                                loadTestAdapter.handleMessage(trigger);
+                            } catch (RuntimeException e) {
+                                startFailures.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        started.countDown();
+                    }
+                }
+            }, "loadTestStarter-" + t);
+            starters.add(starter);
+            starter.start();
+        }
+        started.await();
+
+        // every instance that started needs one reply per gateway task
+        long expectedReplies = (instances - startFailures.get()) * gatewayTasks;
+        long deadline = System.currentTimeMillis() + timeout;
+        while (this.responder.getAnswered() < expectedReplies && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        long unfinished = pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey(PROCESS_DEFINITION_KEY).count();
+
+        String rule = "---------------------------------------------------------------";
+        StringBuilder report = new StringBuilder();
+        report.append('\n').append(rule).append('\n');
+        report.append(" ").append(instances).append(" instances x ").append(gatewayTasks).append(" gateway tasks, started from ")
+                .append(threads).append(" threads, replies after ").append(Long.getLong(REPLY_LATENCY, 10)).append("ms\n");
+        report.append(" elapsed:               ").append(String.format("%.2fs", elapsed)).append('\n');
+        report.append(" instances / second:    ").append(String.format("%.1f", (instances - unfinished) / elapsed)).append('\n');
+        report.append(" signals / second:      ").append(String.format("%.1f", this.responder.getSignalled() / elapsed)).append('\n');
+        report.append(" dwell time p50 / p99:  ").append(String.format("%.2fms / %.2fms", this.responder.getDwellTime(50), this.responder.getDwellTime(99))).append('\n');
+        report.append(" failed starts:         ").append(startFailures.get()).append('\n');
+        report.append(" failed signals:        ").append(this.responder.getFailed()).append(" (").append(this.responder.getFailedOnCollision()).append(" on an optimistic lock)\n");
+        report.append(" optimistic locking collisions (retried or not): ").append(this.loadTestGateway.getSignalCollisionCount()).append('\n');
+        report.append(" unfinished instances:  ").append(unfinished).append('\n');
+        report.append(rule);
+        log.info(report);
+    }
+
+    /**
+     * @return a process that runs through the given number of gateway service tasks, one after another
+     */
+    private static String processDefinition(int gatewayTasks) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<definitions id=\"definitions\" xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" ")
+                .append("xmlns:activiti=\"http://activiti.org/bpmn\" targetNamespace=\"http://www.activiti.org/bpmn2.0\">\n")
+                .append("<process id=\"").append(PROCESS_DEFINITION_KEY).append("\">\n")
+                .append("<startEvent id=\"theStart\"/>\n");
+
+        String previous = "theStart";
+        for (int i = 0; i < gatewayTasks; i++) {
+            String task = "sigw" + i;
+            xml.append("<sequenceFlow id=\"flow").append(i).append("\" sourceRef=\"").append(previous).append("\" targetRef=\"").append(task).append("\"/>\n")
+                    .append("<serviceTask id=\"").append(task).append("\" activiti:delegateExpression=\"#{loadTestGateway}\"/>\n");
+            previous = task;
+        }
+
+        xml.append("<sequenceFlow id=\"flowEnd\" sourceRef=\"").append(previous).append("\" targetRef=\"theEnd\"/>\n")
+                .append("<endEvent id=\"theEnd\"/>\n")
+                .append("</process>\n")
+                .append("</definitions>\n");
+        return xml.toString();
+    }
+}
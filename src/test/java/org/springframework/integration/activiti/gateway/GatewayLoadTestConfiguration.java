@@ -0,0 +1,192 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.CommonConfiguration;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundChannelAdapter;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The asynchronous gateway and process-starting adapter that {@link GatewayLoadTest} drives, and a {@link Responder} that
+ * answers every request after {@link GatewayLoadTest#REPLY_LATENCY} milliseconds.
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class GatewayLoadTestConfiguration extends CommonConfiguration {
+
+    @Bean
+    public DirectChannel loadTestReplies() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public DirectChannel loadTestErrors() {
+        DirectChannel errors = new DirectChannel();
+        errors.subscribe(responder().failureCounter());
+        return errors;
+    }
+
+    @Bean
+    public DirectChannel loadTestRequests() {
+        DirectChannel requests = new DirectChannel();
+        requests.subscribe(responder());
+        return requests;
+    }
+
+    @Bean
+    public Responder responder() {
+        return new Responder(loadTestReplies(), Long.getLong(GatewayLoadTest.REPLY_LATENCY, 10),
+                                    Integer.getInteger(GatewayLoadTest.RESPONDERS, 16));
+    }
+
+    @Bean
+    public AsyncActivityBehaviorMessagingGateway loadTestGateway() throws Exception {
+        AsyncActivityBehaviorMessagingGateway gateway = new AsyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(this.processEngine().getObject());
+        gateway.setRequestChannel(loadTestRequests());
+        gateway.setReplyChannel(loadTestReplies());
+        gateway.setErrorChannel(loadTestErrors());
+        return gateway;
+    }
+
+    @Bean
+    public ProcessStartingOutboundChannelAdapter loadTestAdapter() throws Exception {
+        ProcessStartingOutboundChannelAdapter adapter = new ProcessStartingOutboundChannelAdapter();
+        adapter.setProcessEngine(this.processEngine().getObject());
+        adapter.setProcessDefinitionName(GatewayLoadTest.PROCESS_DEFINITION_KEY);
+        adapter.setProcessVariableHeaderMapper(new DefaultProcessVariableHeaderMapper());
+        return adapter;
+    }
+
+    /**
+     * answers each request on the gateway's reply channel after a delay, and times how long each execution waited, from
+     * its request arriving to its signal returning
+     */
+    public static class Responder implements MessageHandler {
+
+        private final MessageChannel replies;
+
+        private final long latency;
+
+        private final ScheduledExecutorService scheduler;
+
+        private final List<Long> dwellTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+        private final AtomicLong signalled = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private final AtomicLong failedOnCollision = new AtomicLong();
+
+        /**
+         * the ids of the replies the gateway reported on its error channel, which it does instead of throwing from the send
+         */
+        private final ConcurrentMap<Object, Boolean> failedReplies = new ConcurrentHashMap<Object, Boolean>();
+
+        Responder(MessageChannel replies, long latency, int threads) {
+            this.replies = replies;
+            this.latency = latency;
+            this.scheduler = Executors.newScheduledThreadPool(threads, new CustomizableThreadFactory("loadTestResponder-"));
+        }
+
+        public void handleMessage(Message<?> request) throws MessagingException {
+            final long received = System.nanoTime();
+            final Message<String> reply = MessageBuilder.withPayload("reply")
+                                                  .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY,
+                                                                    request.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY))
+                                                  .setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY,
+                                                                    request.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY))
+                                                  .build();
+            this.scheduler.schedule(new Runnable() {
+                public void run() {
+                    try {
+                        replies.send(reply);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        return;
+                    }
+                    // the gateway signals on this thread, so a failure has already been routed by now
+                    if (failedReplies.remove(reply.getHeaders().getId()) == null) {
+                        dwellTimes.add(System.nanoTime() - received);
+                        signalled.incrementAndGet();
+                    }
+                }
+            }, this.latency, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * counts the replies that the gateway reports on its error channel, and those that failed on an optimistic lock
+         */
+        MessageHandler failureCounter() {
+            return new MessageHandler() {
+                public void handleMessage(Message<?> message) throws MessagingException {
+                    failedReplies.put(((MessagingException) message.getPayload()).getFailedMessage().getHeaders().getId(), Boolean.TRUE);
+                    failed.incrementAndGet();
+                    Object cause = message.getHeaders().get(ActivitiConstants.WELL_KNOWN_SIGNAL_FAILURE_CAUSE_HEADER_KEY);
+                    if (cause != null && cause.toString().endsWith("OptimisticLockingException")) {
+                        failedOnCollision.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return the replies that were signalled or failed so far
+         */
+        long getAnswered() {
+            return this.signalled.get() + this.failed.get();
+        }
+
+        long getSignalled() {
+            return this.signalled.get();
+        }
+
+        long getFailed() {
+            return this.failed.get();
+        }
+
+        long getFailedOnCollision() {
+            return this.failedOnCollision.get();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the dwell time, in milliseconds, below which the given percentage of the signalled executions fall
+         */
+        double getDwellTime(double percentile) {
+            List<Long> sorted;
+            synchronized (this.dwellTimes) {
+                sorted = new ArrayList<Long>(this.dwellTimes);
+            }
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index)) / 1e6;
+        }
+
+        void shutdown() {
+            this.scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests the non-blocking mode of the {@link SyncActivityBehaviorMessagingGateway}: a quick reply is applied inline, a late
+ * one signals the wait state the execution was left in, and a missing one ends up on the error channel
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("NonBlockingGatewayTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class NonBlockingGatewayTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    private SyncActivityBehaviorMessagingGateway nonBlockingGateway;
+
+    @Autowired
+    private QueueChannel deferredRequests;
+
+    @Autowired
+    private QueueChannel nonBlockingErrors;
+
+    @Before
+    public void deploy() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/non_blocking_gateway.bpmn20.xml").deploy();
+    }
+
+    private ProcessInstance start(boolean replyInline) {
+        return pe.getRuntimeService().startProcessInstanceByKey("nonBlockingGateway",
+                                                                       Collections.<String, Object>singletonMap(NonBlockingGatewayTestConfiguration.REPLY_INLINE, replyInline));
+    }
+
+    private boolean isRunning(ProcessInstance processInstance) {
+        return pe.getRuntimeService().createProcessInstanceQuery().processInstanceId(processInstance.getId()).count() > 0;
+    }
+
+    private static boolean reply(Message<?> request) {
+        return ((MessageChannel) request.getHeaders().getReplyChannel()).send(
+                MessageBuilder.withPayload("late reply").copyHeaders(request.getHeaders()).build());
+    }
+
+    @Test
+    public void testInlineReply() throws Throwable {
+        ProcessInstance processInstance = start(true);
+
+        assertTrue("the reply should have been applied in the starting transaction", processInstance.isEnded());
+        assertEquals(0, this.nonBlockingGateway.getPendingContinuationCount());
+    }
+
+    @Test
+    public void testDeferredReply() throws Throwable {
+        ProcessInstance processInstance = start(false);
+        assertFalse(processInstance.isEnded());
+
+        Message<?> request = this.deferredRequests.receive(5000);
+        assertNotNull(request);
+        assertTrue(reply(request));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (isRunning(processInstance) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse("the late reply should have signalled the wait state", isRunning(processInstance));
+        assertEquals(0, this.nonBlockingGateway.getPendingContinuationCount());
+    }
+
+    @Test
+    public void testContinuationTimeout() throws Throwable {
+        ProcessInstance processInstance = start(false);
+        Message<?> request = this.deferredRequests.receive(5000);
+        assertNotNull(request);
+
+        Message<?> error = this.nonBlockingErrors.receive(5000);
+        assertNotNull("the timed-out request should have been sent to the error channel", error);
+        assertTrue(error.getPayload() instanceof MessagingException);
+        assertTrue(((MessagingException) error.getPayload()).getCause() instanceof MessageTimeoutException);
+        assertEquals(request.getHeaders().getId(), ((MessagingException) error.getPayload()).getFailedMessage().getHeaders().getId());
+        assertEquals(processInstance.getId(), error.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY));
+
+        // a reply that turns up afterwards is refused, and the execution is left for the error flow to deal with
+        assertFalse(reply(request));
+        assertTrue(isRunning(processInstance));
+        pe.getRuntimeService().deleteProcessInstance(processInstance.getId(), "timed out");
+    }
+}
@@ -0,0 +1,65 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.CommonConfiguration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * A non-blocking synchronous gateway for {@link NonBlockingGatewayTest}. Requests whose process has a "replyInline"
+ * variable are answered right away, on the engine's thread; the others are left on {@link #deferredRequests()} for the
+ * test to answer, or not.
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class NonBlockingGatewayTestConfiguration extends CommonConfiguration {
+
+    static final String REPLY_INLINE = "replyInline";
+
+    @Bean
+    public QueueChannel deferredRequests() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public QueueChannel nonBlockingErrors() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public DirectChannel nonBlockingRequests() {
+        DirectChannel requests = new DirectChannel();
+        requests.subscribe(new MessageHandler() {
+            public void handleMessage(Message<?> request) throws MessagingException {
+                ExecutionSnapshot snapshot = (ExecutionSnapshot) request.getPayload();
+                if (Boolean.TRUE.equals(snapshot.getVariables().get(REPLY_INLINE))) {
+                    ((MessageChannel) request.getHeaders().getReplyChannel()).send(
+                            MessageBuilder.withPayload("inline reply").copyHeaders(request.getHeaders()).build());
+                } else {
+                    deferredRequests().send(request);
+                }
+            }
+        });
+        return requests;
+    }
+
+    @Bean
+    public SyncActivityBehaviorMessagingGateway nonBlockingGateway() throws Exception {
+        SyncActivityBehaviorMessagingGateway gateway = new SyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(this.processEngine().getObject());
+        gateway.setRequestChannel(nonBlockingRequests());
+        gateway.setReplyChannel(new DirectChannel());
+        gateway.setErrorChannel(nonBlockingErrors());
+        gateway.setNonBlocking(true);
+        gateway.setInlineReplyTimeout(1000);
+        gateway.setContinuationTimeout(1000);
+        return gateway;
+    }
+}
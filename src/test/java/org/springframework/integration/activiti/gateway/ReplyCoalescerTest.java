@@ -0,0 +1,74 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * tests that {@link ReplyCoalescer} merges the replies for an execution into one
+ *
+ * @author Josh Long
+ */
+public class ReplyCoalescerTest {
+
+    private final List<Message<?>> handled = new CopyOnWriteArrayList<Message<?>>();
+
+    private ReplyCoalescer coalescer(long window) throws Exception {
+        ReplyCoalescer coalescer = new ReplyCoalescer(new ReplyCoalescer.CoalescedReplyHandler() {
+            public void handleCoalescedReply(Message<?> reply) {
+                handled.add(reply);
+            }
+        });
+        coalescer.setWindow(window);
+        coalescer.afterPropertiesSet();
+        return coalescer;
+    }
+
+    private static Message<?> reply(String executionId, String header, Object value) {
+        return MessageBuilder.withPayload("reply").setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, executionId)
+                       .setHeader(header, value).build();
+    }
+
+    @Test
+    public void testCompletionHeaderFlushesMergedReply() throws Throwable {
+        ReplyCoalescer coalescer = coalescer(60 * 1000);
+        coalescer.add(reply("101", "a", 1));
+        coalescer.add(reply("101", "b", 2));
+        coalescer.add(reply("102", "a", 3));
+        assertEquals(0, handled.size());
+        assertEquals(2, coalescer.getPendingCount());
+
+        coalescer.add(reply("101", ActivitiConstants.WELL_KNOWN_REPLY_COMPLETE_HEADER_KEY, true));
+        assertEquals(1, handled.size());
+        Message<?> merged = handled.get(0);
+        assertEquals(1, merged.getHeaders().get("a"));
+        assertEquals(2, merged.getHeaders().get("b"));
+        assertEquals(1, coalescer.getPendingCount());
+
+        coalescer.destroy();
+        assertEquals(2, handled.size());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testWindowFlushesMergedReply() throws Throwable {
+        ReplyCoalescer coalescer = coalescer(20);
+        coalescer.add(reply("101", "a", 1));
+        coalescer.add(reply("101", "a", 2));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (handled.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, handled.size());
+        assertEquals(2, handled.get(0).getHeaders().get("a"));
+        assertEquals(0, coalescer.getPendingCount());
+        coalescer.destroy();
+    }
+}
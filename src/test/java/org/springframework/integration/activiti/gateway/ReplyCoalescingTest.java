@@ -0,0 +1,89 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.runtime.Execution;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that the asynchronous gateway signals coalesced replies on its reply workers, rather than on the coalescer's timer
+ * thread, and that a coalesced reply that can't be signalled reaches the error channel
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("ReplyCoalescingTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ReplyCoalescingTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    private QueueChannel coalescingRequests;
+
+    @Autowired
+    private DirectChannel coalescingReplies;
+
+    @Autowired
+    private QueueChannel coalescingErrors;
+
+    @Autowired
+    private ReplyCoalescingTestConfiguration.SignallingThreads signallingThreads;
+
+    @Test
+    public void testMergedRepliesAreSignalledByAReplyWorker() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/coalesced_replies.bpmn20.xml").deploy();
+        String processInstanceId = pe.getRuntimeService().startProcessInstanceByKey("coalescedReplies").getId();
+
+        Message<?> request = this.coalescingRequests.receive(10000);
+        assertNotNull(request);
+        ExecutionSnapshot snapshot = (ExecutionSnapshot) request.getPayload();
+        while (pe.getRuntimeService().createExecutionQuery().executionId(snapshot.getExecutionId())
+                       .activityId(snapshot.getActivityId()).count() == 0) {
+            Thread.sleep(10);
+        }
+
+        // two partial replies, merged into one signal once the window closes
+        this.coalescingReplies.send(MessageBuilder.withPayload("a").copyHeaders(request.getHeaders()).setHeader("partA", "a").build());
+        this.coalescingReplies.send(MessageBuilder.withPayload("b").copyHeaders(request.getHeaders()).setHeader("partB", "b").build());
+
+        Execution waiting = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (waiting == null && System.currentTimeMillis() < deadline) {
+            waiting = pe.getRuntimeService().createExecutionQuery().processInstanceId(processInstanceId).activityId("afterReplies").singleResult();
+            Thread.sleep(10);
+        }
+        assertNotNull(waiting);
+        assertEquals("a", pe.getRuntimeService().getVariable(waiting.getId(), "partA"));
+        assertEquals("b", pe.getRuntimeService().getVariable(waiting.getId(), "partB"));
+
+        assertEquals(1, this.signallingThreads.getNames().size());
+        assertTrue(this.signallingThreads.getNames().get(0), this.signallingThreads.getNames().get(0).startsWith("coalescingGatewayReplyWorker"));
+    }
+
+    @Test
+    public void testMergedReplyFailuresReachTheErrorChannel() throws Throwable {
+        this.coalescingReplies.send(MessageBuilder.withPayload("reply")
+                                            .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, "no-such-execution")
+                                            .build());
+
+        Message<?> error = this.coalescingErrors.receive(10000);
+        assertNotNull(error);
+        Message<?> failed = ((MessagingException) error.getPayload()).getFailedMessage();
+        assertEquals("no-such-execution", failed.getHeaders().get(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY));
+    }
+}
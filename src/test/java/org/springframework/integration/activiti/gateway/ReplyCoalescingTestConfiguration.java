@@ -0,0 +1,74 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.activiti.CommonConfiguration;
+import org.springframework.integration.activiti.mapping.DefaultProcessVariableHeaderMapper;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An asynchronous gateway that coalesces its replies, for {@link ReplyCoalescingTest}, and a {@link SignallingThreads}
+ * that the process calls once the gateway task has been signalled.
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class ReplyCoalescingTestConfiguration extends CommonConfiguration {
+
+    @Bean
+    public QueueChannel coalescingRequests() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public DirectChannel coalescingReplies() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public QueueChannel coalescingErrors() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public SignallingThreads signallingThreads() {
+        return new SignallingThreads();
+    }
+
+    @Bean
+    public AsyncActivityBehaviorMessagingGateway coalescingGateway() throws Exception {
+        DefaultProcessVariableHeaderMapper headerMapper = new DefaultProcessVariableHeaderMapper();
+        headerMapper.setHeaderToProcessVariableNames("part*");
+        headerMapper.afterPropertiesSet();
+
+        AsyncActivityBehaviorMessagingGateway gateway = new AsyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(this.processEngine().getObject());
+        gateway.setHeaderMapper(headerMapper);
+        gateway.setRequestChannel(coalescingRequests());
+        gateway.setReplyChannel(coalescingReplies());
+        gateway.setErrorChannel(coalescingErrors());
+        gateway.setReplyCoalescingWindow(100);
+        return gateway;
+    }
+
+    /**
+     * remembers the threads that signalled the gateway task
+     */
+    public static class SignallingThreads {
+
+        private final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+
+        public void record() {
+            this.names.add(Thread.currentThread().getName());
+        }
+
+        public List<String> getNames() {
+            return this.names;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ProcessEngine;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.test.AbstractSpringIntegrationActivitiTestCase;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that the asynchronous gateway's reply workers signal every reply for a process instance on the same thread, while
+ * replies for different process instances are spread across the workers, and that a reply that fails to signal an execution
+ * the gateway never tracked doesn't leave it tracked. Once the gateway's destroyed, replies are left on the reply channel.
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("ReplyPartitioningTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ReplyPartitioningTest extends AbstractSpringIntegrationActivitiTestCase {
+
+    private static final int INSTANCES = 16;
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    private QueueChannel partitionedRequests;
+
+    @Autowired
+    private DirectChannel partitionedReplies;
+
+    @Autowired
+    private QueueChannel partitionedErrors;
+
+    @Autowired
+    private AsyncActivityBehaviorMessagingGateway partitionedGateway;
+
+    @Autowired
+    private ReplyPartitioningTestConfiguration.ThreadRecorder threadRecorder;
+
+    @Test
+    public void testRepliesArePartitionedByProcessInstance() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/partitioned_replies.bpmn20.xml").deploy();
+
+        for (int i = 0; i < INSTANCES; i++) {
+            pe.getRuntimeService().startProcessInstanceByKey("partitionedReplies");
+        }
+
+        // two gateway tasks per instance
+        for (int i = 0; i < INSTANCES * 2; i++) {
+            Message<?> request = this.partitionedRequests.receive(10000);
+            assertNotNull("timed out waiting for request " + i, request);
+            reply(request);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey("partitionedReplies").count() > 0 &&
+                       System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pe.getRuntimeService().createProcessInstanceQuery().processDefinitionKey("partitionedReplies").count());
+
+        Map<String, List<String>> threads = this.threadRecorder.getThreads();
+        assertEquals(INSTANCES, threads.size());
+        Set<String> workers = new HashSet<String>();
+        for (Map.Entry<String, List<String>> instance : threads.entrySet()) {
+            List<String> names = instance.getValue();
+            assertEquals(2, names.size());
+            assertEquals("process instance " + instance.getKey() + " was signalled on two threads", names.get(0), names.get(1));
+            assertTrue(names.get(0).startsWith("partitionedGatewayReplyWorker"));
+            workers.add(names.get(0));
+        }
+        assertTrue("all the replies were signalled on one worker", workers.size() > 1);
+    }
+
+    @Test
+    public void testFailedReplyForAnUnknownExecutionIsNotTracked() throws Throwable {
+        int outstanding = this.partitionedGateway.getOutstandingExecutionCount();
+
+        this.partitionedReplies.send(MessageBuilder.withPayload("reply")
+                                             .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, "no-such-execution")
+                                             .setHeader(ActivitiConstants.WELL_KNOWN_ACTIVITY_ID_HEADER_KEY, "partitionedGateway1")
+                                             .build());
+
+        assertNotNull(this.partitionedErrors.receive(10000));
+        assertEquals(outstanding, this.partitionedGateway.getOutstandingExecutionCount());
+    }
+
+    @Test
+    public void testDestroyLeavesRepliesOnTheChannel() throws Throwable {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.afterPropertiesSet();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, taskScheduler);
+
+        QueueChannel replies = new QueueChannel();
+        AsyncActivityBehaviorMessagingGateway gateway = new AsyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(this.pe);
+        gateway.setRequestChannel(new QueueChannel());
+        gateway.setReplyChannel(replies);
+        gateway.setErrorChannel(new QueueChannel());
+        gateway.setReplyConcurrency(2);
+        gateway.setBeanName("destroyedGateway");
+        gateway.setBeanFactory(beanFactory);
+        gateway.afterPropertiesSet();
+        gateway.destroy();
+
+        Message<?> reply = MessageBuilder.withPayload("reply")
+                                   .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, "no-such-execution")
+                                   .build();
+        replies.send(reply);
+        Thread.sleep(500); // a few polls' worth
+
+        try {
+            assertSame(reply, replies.receive(0));
+        } finally {
+            taskScheduler.destroy();
+        }
+    }
+
+    /**
+     * answers a request once its wait state has been committed, so that the reply can't beat it to the database
+     */
+    private void reply(Message<?> request) throws InterruptedException {
+        ExecutionSnapshot snapshot = (ExecutionSnapshot) request.getPayload();
+        while (pe.getRuntimeService().createExecutionQuery().executionId(snapshot.getExecutionId())
+                       .activityId(snapshot.getActivityId()).count() == 0) {
+            Thread.sleep(10);
+        }
+        this.partitionedReplies.send(MessageBuilder.withPayload("reply")
+                                             .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, snapshot.getExecutionId())
+                                             .setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, snapshot.getProcessInstanceId())
+                                             .build());
+    }
+}
@@ -0,0 +1,90 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.impl.cfg.TransactionListener;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.activiti.CommonConfiguration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An asynchronous gateway that signals its replies in batches, on several threads, for {@link ReplyPartitioningTest}, and a
+ * {@link ThreadRecorder} that the process calls after every gateway task.
+ *
+ * @author Josh Long
+ */
+@Configuration
+public class ReplyPartitioningTestConfiguration extends CommonConfiguration {
+
+    static final int REPLY_CONCURRENCY = 4;
+
+    @Bean
+    public QueueChannel partitionedRequests() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public DirectChannel partitionedReplies() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public QueueChannel partitionedErrors() {
+        return new QueueChannel();
+    }
+
+    @Bean
+    public ThreadRecorder threadRecorder() {
+        return new ThreadRecorder();
+    }
+
+    @Bean
+    public AsyncActivityBehaviorMessagingGateway partitionedGateway() throws Exception {
+        AsyncActivityBehaviorMessagingGateway gateway = new AsyncActivityBehaviorMessagingGateway();
+        gateway.setProcessEngine(this.processEngine().getObject());
+        gateway.setRequestChannel(partitionedRequests());
+        gateway.setReplyChannel(partitionedReplies());
+        gateway.setErrorChannel(partitionedErrors());
+        gateway.setReplyConcurrency(REPLY_CONCURRENCY);
+        gateway.setReplyBatchSize(3);
+        return gateway;
+    }
+
+    /**
+     * remembers, for each process instance, the threads that carried it past its gateway tasks. Those are the threads that
+     * signalled the replies. A thread is only recorded once its transaction commits, as a batch that fails is signalled
+     * again, reply by reply.
+     */
+    public static class ThreadRecorder {
+
+        private final Map<String, List<String>> threads = new ConcurrentHashMap<String, List<String>>();
+
+        public void record(DelegateExecution execution) {
+            final String processInstanceId = execution.getProcessInstanceId();
+            final String thread = Thread.currentThread().getName();
+            Context.getCommandContext().getTransactionContext().addTransactionListener(TransactionState.COMMITTED, new TransactionListener() {
+                public void execute(CommandContext commandContext) {
+                    List<String> names = threads.get(processInstanceId);
+                    if (names == null) {
+                        names = new ArrayList<String>();
+                        threads.put(processInstanceId, names);
+                    }
+                    names.add(thread);
+                }
+            });
+        }
+
+        Map<String, List<String>> getThreads() {
+            return this.threads;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.springframework.integration.activiti.gateway;
+
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.impl.ProcessEngineImpl;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that {@link SignalRetryPolicy} retries optimistic locking collisions, and only those
+ *
+ * @author Josh Long
+ */
+public class SignalRetryPolicyTest {
+    private ProcessEngineImpl processEngine;
+    private CommandExecutor commandExecutor;
+    private Command<String> command;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void begin() throws Throwable {
+        this.processEngine = mock(ProcessEngineImpl.class);
+        ProcessEngineConfigurationImpl processEngineConfiguration = mock(ProcessEngineConfigurationImpl.class);
+        this.commandExecutor = mock(CommandExecutor.class);
+        this.command = mock(Command.class);
+
+        when(this.processEngine.getProcessEngineConfiguration()).thenReturn(processEngineConfiguration);
+        when(processEngineConfiguration.getCommandExecutorTxRequired()).thenReturn(this.commandExecutor);
+    }
+
+    @Test
+    public void testRetriesCollisions() throws Throwable {
+        when(this.commandExecutor.execute(this.command))
+                .thenThrow(new ActivitiOptimisticLockingException("collision"))
+                .thenThrow(new ActivitiOptimisticLockingException("collision"))
+                .thenReturn("signalled");
+
+        SignalRetryPolicy signalRetryPolicy = new SignalRetryPolicy();
+        signalRetryPolicy.setInitialBackOff(1);
+        assertEquals("signalled", signalRetryPolicy.execute(this.processEngine, this.command));
+        verify(this.commandExecutor, times(3)).execute(this.command);
+        assertEquals(2, signalRetryPolicy.getCollisionCount());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Throwable {
+        when(this.commandExecutor.execute(this.command)).thenThrow(new ActivitiOptimisticLockingException("collision"));
+
+        SignalRetryPolicy signalRetryPolicy = new SignalRetryPolicy();
+        signalRetryPolicy.setInitialBackOff(1);
+        signalRetryPolicy.setMaxAttempts(2);
+        try {
+            signalRetryPolicy.execute(this.processEngine, this.command);
+            fail("the collision should have been rethrown");
+        } catch (ActivitiOptimisticLockingException e) {
+            // expected
+        }
+        verify(this.commandExecutor, times(2)).execute(this.command);
+    }
+
+    @Test
+    public void testBackOffIsCapped() throws Throwable {
+        when(this.commandExecutor.execute(this.command))
+                .thenThrow(new ActivitiOptimisticLockingException("collision"))
+                .thenThrow(new ActivitiOptimisticLockingException("collision"))
+                .thenReturn("signalled");
+
+        SignalRetryPolicy signalRetryPolicy = new SignalRetryPolicy();
+        signalRetryPolicy.setInitialBackOff(10000);
+        signalRetryPolicy.setMaxBackOff(1);
+        long start = System.currentTimeMillis();
+        assertEquals("signalled", signalRetryPolicy.execute(this.processEngine, this.command));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testDoesNotRetryOtherFailures() throws Throwable {
+        when(this.commandExecutor.execute(this.command)).thenThrow(new IllegalStateException("no such execution"));
+
+        try {
+            new SignalRetryPolicy().execute(this.processEngine, this.command);
+            fail("the failure should have been rethrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        verify(this.commandExecutor, times(1)).execute(this.command);
+    }
+}
@@ -0,0 +1,133 @@
+package org.springframework.integration.activiti.jms;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.gateway.ExecutionSnapshot;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+import javax.jms.BytesMessage;
+import javax.jms.Session;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that an {@link ExecutionMessageCodec} round trips the gateways' messages, and that it's smaller than Java serialization
+ *
+ * @author Josh Long
+ */
+public class ExecutionMessageCodecTest {
+
+    private ExecutionMessageCodec codec = new ExecutionMessageCodec();
+
+    private Message<?> executionMessage() {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("customerId", 232);
+        variables.put("orderTotal", 99.95d);
+        variables.put("confirmed", true);
+        variables.put("orderDate", new Date(1300000000000L));
+        variables.put("note", "leave it at the door");
+        variables.put("discount", new BigDecimal("0.15"));
+        variables.put("missing", null);
+
+        return MessageBuilder.withPayload(new ExecutionSnapshot("1207", "1201", "sigw", variables))
+                .setHeader(ActivitiConstants.WELL_KNOWN_EXECUTION_ID_HEADER_KEY, "1207")
+                .setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY, "1201")
+                .setHeader(ActivitiConstants.WELL_KNOWN_ACTIVITY_ID_HEADER_KEY, "sigw")
+                .setHeader(ActivitiConstants.WELL_KNOWN_PROCESS_DEFINITION_ID_HEADER_KEY, "sigw:1:1004")
+                .setHeader("customerId", 232L)
+                .setHeader("attempts", (short) -2)
+                .setHeader("grade", 'A')
+                .setHeader("weight", 2.5f)
+                .setHeader("offset", -Float.MAX_VALUE)
+                .setHeader("digest", new byte[]{1, 2, 3})
+                .setCorrelationId("0042")
+                .build();
+    }
+
+    @Test
+    public void testRoundTrip() throws Throwable {
+        Message<?> message = executionMessage();
+        Message<?> decoded = this.codec.decode(this.codec.encode(message));
+
+        ExecutionSnapshot snapshot = (ExecutionSnapshot) decoded.getPayload();
+        assertEquals("1207", snapshot.getExecutionId());
+        assertEquals("1201", snapshot.getProcessInstanceId());
+        assertEquals("sigw", snapshot.getActivityId());
+        assertEquals(((ExecutionSnapshot) message.getPayload()).getVariables(), snapshot.getVariables());
+
+        for (String header : message.getHeaders().keySet()) {
+            if (header.equals("id") || header.equals("timestamp")) {
+                continue;
+            }
+            Object expected = message.getHeaders().get(header);
+            Object actual = decoded.getHeaders().get(header);
+            if (expected instanceof byte[]) {
+                assertTrue(Arrays.equals((byte[]) expected, (byte[]) actual));
+            } else {
+                assertEquals("header '" + header + "'", expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Throwable {
+        Message<?> message = executionMessage();
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(serialized);
+        out.writeObject(message);
+        out.close();
+
+        int encoded = this.codec.encode(message).length;
+        assertTrue("encoded to " + encoded + " bytes, serialized to " + serialized.size(), encoded < serialized.size() / 2);
+    }
+
+    @Test
+    public void testUnencodableHeadersAreLeftOut() throws Throwable {
+        Message<?> message = MessageBuilder.withPayload(Long.MIN_VALUE)
+                .setReplyChannel(new QueueChannel())
+                .setHeader("negative", Integer.MIN_VALUE)
+                .build();
+        Message<?> decoded = this.codec.decode(this.codec.encode(message));
+        assertEquals(Long.MIN_VALUE, decoded.getPayload());
+        assertEquals(Integer.MIN_VALUE, decoded.getHeaders().get("negative"));
+        assertFalse(decoded.getHeaders().containsKey("replyChannel"));
+    }
+
+    @Test
+    public void testFloatsTakeFourBytes() throws Throwable {
+        int asFloat = this.codec.encode(MessageBuilder.withPayload(1.5f).build()).length;
+        int asDouble = this.codec.encode(MessageBuilder.withPayload(1.5d).build()).length;
+        assertEquals(asDouble - 4, asFloat);
+        assertEquals(-1.5f, this.codec.decode(this.codec.encode(MessageBuilder.withPayload(-1.5f).build())).getPayload());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() throws Throwable {
+        this.codec.decode(new byte[]{99});
+    }
+
+    @Test
+    public void testConverterWritesABytesMessage() throws Throwable {
+        Session session = mock(Session.class);
+        BytesMessage bytesMessage = mock(BytesMessage.class);
+        when(session.createBytesMessage()).thenReturn(bytesMessage);
+
+        new ExecutionMessageConverter().toMessage("hello", session);
+        verify(bytesMessage).writeBytes(any(byte[].class));
+    }
+}
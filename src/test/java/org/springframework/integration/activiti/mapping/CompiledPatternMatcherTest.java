@@ -0,0 +1,54 @@
+package org.springframework.integration.activiti.mapping;
+
+import org.junit.Test;
+import org.springframework.util.PatternMatchUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that {@link CompiledPatternMatcher} agrees with {@link PatternMatchUtils#simpleMatch(String, String)}
+ *
+ * @author Josh Long
+ * @since 2.1
+ */
+public class CompiledPatternMatcherTest {
+    private String[] patterns = new String[]{"customerId", "crm*", "*Date", "*order*", "a*b*c"};
+    private String[] candidates = new String[]{"customerId", "customerid", "crm", "crmId", "cr", "shipDate", "Date", "date",
+                                               "myorderNo", "order", "orde", "abc", "axxbyyc", "acb", ""};
+
+    @Test
+    public void testAgreesWithSimpleMatch() throws Throwable {
+        CompiledPatternMatcher matcher = new CompiledPatternMatcher(this.patterns);
+
+        for (int pass = 0; pass < 2; pass++) { // the second pass is answered from the cache
+            for (String candidate : this.candidates) {
+                assertEquals("mismatch for '" + candidate + "'", PatternMatchUtils.simpleMatch(this.patterns, candidate), matcher.matches(candidate));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchAll() throws Throwable {
+        CompiledPatternMatcher matcher = new CompiledPatternMatcher("customerId", "*");
+        assertTrue(matcher.matches("anything"));
+        assertFalse(matcher.isExactNamesOnly());
+    }
+
+    @Test
+    public void testNoPatterns() throws Throwable {
+        CompiledPatternMatcher matcher = new CompiledPatternMatcher((String[]) null);
+        assertFalse(matcher.matches("anything"));
+        assertTrue(matcher.isExactNamesOnly());
+    }
+
+    @Test
+    public void testBoundedCache() throws Throwable {
+        CompiledPatternMatcher matcher = new CompiledPatternMatcher(2, "crm*");
+        assertTrue(matcher.matches("crm1"));
+        assertTrue(matcher.matches("crm2"));
+        assertTrue(matcher.matches("crm3"));
+        assertFalse(matcher.matches("customerId"));
+    }
+}
@@ -10,13 +10,22 @@ import org.junit.Test;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.activiti.ActivitiConstants;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -165,6 +174,36 @@ public class DefaultProcessVariableHeaderMapperTest {
         assertEquals(res.size(), countOfWellKnownProcessHeaders + pvs.size());        // account for
     }
 
+    @Test
+    public void testFetchingOnlyExactlyNamedProcessVariables() throws Throwable {
+        ActivityExecution execution = mock(ActivityExecution.class);
+        when(execution.hasVariable("age")).thenReturn(true);
+        when(execution.getVariable("age")).thenReturn(232);
+        this.processVariableHeaderMapper.setProcessVariableToHeaderNames("age", "customerId");
+
+        Map<String, Object> vars = this.processVariableHeaderMapper.getMappedProcessVariables(execution);
+
+        assertEquals(1, vars.size());
+        assertEquals(232, vars.get("age"));
+        verify(execution, never()).getVariables();
+        verify(execution, never()).getVariableNames();
+    }
+
+    @Test
+    public void testFetchingPatternNamedProcessVariables() throws Throwable {
+        ActivityExecution execution = mock(ActivityExecution.class);
+        when(execution.getVariableNames()).thenReturn(new HashSet<String>(Arrays.asList("crmId", "crmData", "largeDocument")));
+        when(execution.getVariable("crmId")).thenReturn(232);
+        when(execution.getVariable("crmData")).thenReturn("data");
+        this.processVariableHeaderMapper.setProcessVariableToHeaderNames(this.testKeys);
+
+        Map<String, Object> vars = this.processVariableHeaderMapper.getMappedProcessVariables(execution);
+
+        assertEquals(2, vars.size());
+        verify(execution, never()).getVariables();
+        verify(execution, never()).getVariable("largeDocument");
+    }
+
     @Test
     public void testMappingProcessVariablesToHeadersSetup() throws Throwable {
         processVariableHeaderMapper.setProcessVariableToHeaderNames((String[]) null);
@@ -172,6 +211,54 @@ public class DefaultProcessVariableHeaderMapperTest {
         processVariableHeaderMapper.setProcessVariableToHeaderNames(this.testKeys);
         processVariableHeaderMapper.afterPropertiesSet();
     }
-}
 
+    private Map<String, Object> mapHeaders(String name, Object value) {
+        this.processVariableHeaderMapper.setHeaderToProcessVariableNames(name);
+        Map<String, Object> vars = new HashMap<String, Object>();
+        this.processVariableHeaderMapper.fromHeaders(new MessageHeaders(Collections.singletonMap(name, value)), vars);
+        return vars;
+    }
+
+    @Test
+    public void testSimpleValuesPassThrough() throws Throwable {
+        Date date = new Date();
+        this.processVariableHeaderMapper.setMaxProcessVariableSize(4);
+        this.processVariableHeaderMapper.setAllowSerializedValues(false);
+        assertSame(date, mapHeaders("orderDate", date).get("orderDate"));
+        assertEquals(Long.MAX_VALUE, mapHeaders("customerId", Long.MAX_VALUE).get("customerId"));
+        assertEquals("crm", mapHeaders("source", "crm").get("source"));
+    }
 
+    @Test
+    public void testRichValuesAreConverted() throws Throwable {
+        Map<Class<?>, ProcessVariableConverter> converters = new HashMap<Class<?>, ProcessVariableConverter>();
+        converters.put(List.class, new JacksonProcessVariableConverter());
+        this.processVariableHeaderMapper.setProcessVariableConverters(converters);
+        this.processVariableHeaderMapper.setAllowSerializedValues(false);
+
+        List<Object> lineItems = new ArrayList<Object>(Arrays.asList("sku-1", 3));
+        assertEquals("[\"sku-1\",3]", mapHeaders("lineItems", lineItems).get("lineItems"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSerializedValuesCanBeRejected() throws Throwable {
+        this.processVariableHeaderMapper.setAllowSerializedValues(false);
+        mapHeaders("lineItems", new ArrayList<Object>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOversizedValuesAreRejected() throws Throwable {
+        this.processVariableHeaderMapper.setMaxProcessVariableSize(1024);
+        mapHeaders("document", new byte[1024 * 1024]);
+    }
+
+    @Test
+    public void testOversizedValuesCanBeDropped() throws Throwable {
+        this.processVariableHeaderMapper.setMaxProcessVariableSize(1024);
+        this.processVariableHeaderMapper.setOversizedValuePolicy(DefaultProcessVariableHeaderMapper.OversizedValuePolicy.DROP);
+
+        List<Object> large = new ArrayList<Object>(Collections.nCopies(10000, (Object) "line"));
+        assertFalse(mapHeaders("lineItems", large).containsKey("lineItems"));
+        assertTrue(mapHeaders("lineItems", new ArrayList<Object>(Arrays.asList("line"))).containsKey("lineItems"));
+    }
+}
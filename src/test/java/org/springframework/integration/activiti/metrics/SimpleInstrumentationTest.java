@@ -0,0 +1,48 @@
+package org.springframework.integration.activiti.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that {@link SimpleInstrumentation} adds up what it's told
+ *
+ * @author Josh Long
+ */
+public class SimpleInstrumentationTest {
+
+    @Test
+    public void testRecords() throws Throwable {
+        SimpleInstrumentation instrumentation = new SimpleInstrumentation();
+        assertTrue(instrumentation.isEnabled());
+
+        instrumentation.recordRequest();
+        instrumentation.recordRequest();
+        instrumentation.recordError();
+        instrumentation.incrementInFlight();
+        instrumentation.incrementInFlight();
+        instrumentation.decrementInFlight();
+        instrumentation.recordDwellTime(1000000);
+        instrumentation.recordDwellTime(3000000);
+
+        assertEquals(2, instrumentation.getRequestCount());
+        assertEquals(1, instrumentation.getErrorCount());
+        assertEquals(1, instrumentation.getInFlight());
+        assertEquals(2.0, instrumentation.getMeanDwellTime(), 0.0001);
+        assertEquals(3.0, instrumentation.getMaxDwellTime(), 0.0001);
+        assertEquals(0.0, instrumentation.getMeanEngineTime(), 0.0001);
+        assertTrue(instrumentation.getRequestRate() > 0);
+
+        instrumentation.reset();
+        assertEquals(0, instrumentation.getRequestCount());
+        assertEquals(0.0, instrumentation.getMaxDwellTime(), 0.0001);
+        assertEquals(1, instrumentation.getInFlight());
+    }
+
+    @Test
+    public void testNoOp() throws Throwable {
+        assertFalse(NoOpInstrumentation.INSTANCE.isEnabled());
+    }
+}
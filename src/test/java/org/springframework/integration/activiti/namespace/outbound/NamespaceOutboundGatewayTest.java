@@ -0,0 +1,93 @@
+package org.springframework.integration.activiti.namespace.outbound;
+
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.JavaDelegate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.activiti.ActivitiConstants;
+import org.springframework.integration.activiti.adapter.ProcessStartingOutboundGateway;
+import org.springframework.integration.activiti.mapping.CompiledPatternMatcher;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.endpoint.EventDrivenConsumer;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests that the {@code outbound-gateway} element configures a {@link ProcessStartingOutboundGateway}, and that the gateway
+ * replies with the variables of a process instance that ended as soon as it started
+ *
+ * @author Josh Long
+ */
+@ContextConfiguration("NamespaceOutboundGatewayTest-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class NamespaceOutboundGatewayTest {
+
+    @Autowired
+    private ProcessEngine pe;
+
+    @Autowired
+    @Qualifier("quoteRequests")
+    private MessageChannel quoteRequests;
+
+    @Autowired
+    @Qualifier("quoteReplies")
+    private QueueChannel quoteReplies;
+
+    @Autowired
+    @Qualifier("quoteGateway")
+    private EventDrivenConsumer quoteGateway;
+
+    @Test
+    public void testParsesTheGateway() throws Throwable {
+        Object handler = new DirectFieldAccessor(this.quoteGateway).getPropertyValue("handler");
+        assertTrue(handler instanceof ProcessStartingOutboundGateway);
+
+        DirectFieldAccessor gateway = new DirectFieldAccessor(handler);
+        assertSame(this.pe, gateway.getPropertyValue("processEngine"));
+        assertEquals("quickQuote", gateway.getPropertyValue("processDefinitionName"));
+        assertSame(this.quoteReplies, gateway.getPropertyValue("outputChannel"));
+        CompiledPatternMatcher replyProcessVariableNames = (CompiledPatternMatcher) gateway.getPropertyValue("replyProcessVariableNames");
+        assertEquals(Arrays.asList("quote"), Arrays.asList(replyProcessVariableNames.getPatterns()));
+    }
+
+    @Test
+    public void testRepliesWithTheVariablesOfAnEndedProcessInstance() throws Throwable {
+        pe.getRepositoryService().createDeployment().addClasspathResource("processes/quick_quote.bpmn20.xml").deploy();
+
+        this.quoteRequests.send(MessageBuilder.withPayload("quote, please").setHeader("customerId", 232L).build());
+
+        Message<?> reply = this.quoteReplies.receive(10000);
+        assertNotNull(reply);
+        assertEquals(reply.getPayload(), reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ID_HEADER_KEY));
+        assertEquals(Boolean.TRUE, reply.getHeaders().get(ActivitiConstants.WELL_KNOWN_PROCESS_INSTANCE_ENDED_HEADER_KEY));
+        assertEquals(464L, reply.getHeaders().get("quote"));
+        assertFalse(reply.getHeaders().containsKey("quotedBy"));
+        assertEquals(0, pe.getRuntimeService().createProcessInstanceQuery().processInstanceId((String) reply.getPayload()).count());
+    }
+
+    /**
+     * quotes twice the customer id, and signs the quote
+     */
+    public static class Quote implements JavaDelegate {
+
+        public void execute(DelegateExecution execution) throws Exception {
+            execution.setVariable("quote", 2 * (Long) execution.getVariable("customerId"));
+            execution.setVariable("quotedBy", "Josh");
+        }
+    }
+}
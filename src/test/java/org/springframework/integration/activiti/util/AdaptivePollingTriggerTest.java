@@ -0,0 +1,36 @@
+package org.springframework.integration.activiti.util;
+
+import org.junit.Test;
+import org.springframework.scheduling.TriggerContext;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * tests that {@link AdaptivePollingTrigger} backs off while idle and speeds up when messages arrive
+ *
+ * @author Josh Long
+ */
+public class AdaptivePollingTriggerTest {
+
+    @Test
+    public void testBackOffAndRecovery() throws Throwable {
+        AdaptivePollingTrigger trigger = new AdaptivePollingTrigger();
+        trigger.setMaxInterval(8);
+
+        TriggerContext triggerContext = mock(TriggerContext.class);
+        when(triggerContext.lastCompletionTime()).thenReturn(new Date(1000));
+
+        long[] expected = {1, 2, 4, 8, 8};
+        for (long interval : expected) {
+            assertEquals(1000 + interval, trigger.nextExecutionTime(triggerContext).getTime());
+        }
+
+        trigger.messageReceived();
+        assertEquals(1000, trigger.nextExecutionTime(triggerContext).getTime());
+        assertEquals(1001, trigger.nextExecutionTime(triggerContext).getTime());
+    }
+}
@@ -0,0 +1,138 @@
+package org.springframework.integration.activiti.util;
+
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests the batching, backpressure and shutdown of {@link MessageBatcher}
+ *
+ * @author Josh Long
+ */
+public class MessageBatcherTest {
+
+    private static Message<?> message(int i) {
+        return MessageBuilder.withPayload(i).build();
+    }
+
+    @Test
+    public void testBatchesBySizeAndTimeout() throws Throwable {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch handled = new CountDownLatch(7);
+        MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+            public void handleBatch(List<Message<?>> messages) {
+                batchSizes.add(messages.size());
+                for (Message<?> ignored : messages) {
+                    handled.countDown();
+                }
+            }
+        });
+        batcher.setBatchSize(5);
+        batcher.setBatchTimeout(200);
+        batcher.afterPropertiesSet();
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(message(i));
+        }
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        batcher.destroy();
+
+        // the first batch fills up, the second is handed off when the timeout expires
+        assertEquals(2, batchSizes.size());
+        assertEquals(5, (int) batchSizes.get(0));
+        assertEquals(2, (int) batchSizes.get(1));
+    }
+
+    @Test
+    public void testAddBlocksWhenFull() throws Throwable {
+        final List<Object> handled = Collections.synchronizedList(new ArrayList<Object>());
+        final MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+            public void handleBatch(List<Message<?>> messages) {
+                for (Message<?> message : messages) {
+                    handled.add(message.getPayload());
+                }
+            }
+        });
+        batcher.setCapacity(2);
+        batcher.setTaskExecutor(new TaskExecutor() {
+            public void execute(Runnable task) {
+                // no worker: nothing leaves the queue until destroy()
+            }
+        });
+        batcher.afterPropertiesSet();
+        batcher.add(message(0));
+        batcher.add(message(1));
+
+        final AtomicBoolean added = new AtomicBoolean();
+        Thread sender = new Thread(new Runnable() {
+            public void run() {
+                batcher.add(message(2));
+                added.set(true);
+            }
+        });
+        sender.start();
+        Thread.sleep(200);
+        assertFalse("add() should block while the queue is full", added.get());
+
+        // destroy() makes room, so the blocked message gets in, and is handed off, too
+        batcher.destroy();
+        sender.join(5000);
+        assertTrue(added.get());
+        assertEquals(3, handled.size());
+        assertEquals(0, handled.get(0));
+        assertEquals(2, handled.get(2));
+    }
+
+    @Test
+    public void testDestroyWaitsForTheWorker() throws Throwable {
+        final AtomicInteger concurrentHandlers = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final List<Object> handled = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+            public void handleBatch(List<Message<?>> messages) {
+                if (concurrentHandlers.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                firstBatchStarted.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (Message<?> message : messages) {
+                    handled.add(message.getPayload());
+                }
+                concurrentHandlers.decrementAndGet();
+            }
+        });
+        batcher.setBatchSize(2);
+        batcher.setBatchTimeout(0);
+        batcher.afterPropertiesSet();
+
+        for (int i = 0; i < 6; i++) {
+            batcher.add(message(i));
+        }
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        batcher.destroy();
+
+        assertFalse("destroy() handled batches while the worker was still handling one", overlapped.get());
+        assertEquals(6, handled.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, handled.get(i));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.springframework.integration.activiti.util;
+
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests the ordering, rate limiting and shutdown of {@link PriorityAdmissionQueue}
+ *
+ * @author Josh Long
+ */
+public class PriorityAdmissionQueueTest {
+
+    @Test
+    public void testHigherPrioritiesAreAdmittedFirst() throws Throwable {
+        final List<Object> admitted = Collections.synchronizedList(new ArrayList<Object>());
+        PriorityAdmissionQueue queue = new PriorityAdmissionQueue(new PriorityAdmissionQueue.AdmissionHandler() {
+            public void admit(Message<?> message) {
+                admitted.add(message.getPayload());
+            }
+        });
+        queue.setTaskExecutor(new TaskExecutor() {
+            public void execute(Runnable task) {
+                // don't start the workers; destroy() admits what's left, in order
+            }
+        });
+        queue.afterPropertiesSet();
+
+        queue.add(MessageBuilder.withPayload("a").build(), "signup", 0);
+        queue.add(MessageBuilder.withPayload("b").build(), "signup", 5);
+        queue.add(MessageBuilder.withPayload("c").build(), "signup", 0);
+        queue.add(MessageBuilder.withPayload("d").build(), "signup", 5);
+        assertEquals(4, queue.getQueueDepth());
+
+        queue.destroy();
+        assertEquals(4, queue.getAdmittedCount());
+        assertEquals(4, admitted.size());
+        assertEquals("b", admitted.get(0));
+        assertEquals("d", admitted.get(1));
+        assertEquals("a", admitted.get(2));
+        assertEquals("c", admitted.get(3));
+    }
+
+    @Test
+    public void testABusyKeyDoesNotHoldUpTheOthers() throws Throwable {
+        final List<Object> admitted = Collections.synchronizedList(new ArrayList<Object>());
+        PriorityAdmissionQueue queue = new PriorityAdmissionQueue(new PriorityAdmissionQueue.AdmissionHandler() {
+            public void admit(Message<?> message) {
+                admitted.add(message.getPayload());
+            }
+        });
+        queue.setPermitsPerSecond(0.5);
+        queue.setBurst(1);
+        queue.afterPropertiesSet();
+
+        queue.add(MessageBuilder.withPayload("a").build(), "signup", 0);
+        queue.add(MessageBuilder.withPayload("b").build(), "signup", 0);
+        queue.add(MessageBuilder.withPayload("c").build(), "order", 0);
+
+        // "b" has to wait two seconds for its key's next permit, but the one worker moves on to "c" meanwhile
+        long deadline = System.currentTimeMillis() + 1000;
+        while (admitted.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, admitted.size());
+        assertTrue(admitted.contains("a"));
+        assertTrue(admitted.contains("c"));
+        assertEquals(1, queue.getQueueDepth());
+
+        queue.destroy();
+        assertEquals("b", admitted.get(2));
+    }
+
+    @Test
+    public void testDestroyAdmitsBlockedSenders() throws Throwable {
+        final List<Object> admitted = Collections.synchronizedList(new ArrayList<Object>());
+        final PriorityAdmissionQueue queue = new PriorityAdmissionQueue(new PriorityAdmissionQueue.AdmissionHandler() {
+            public void admit(Message<?> message) {
+                admitted.add(message.getPayload());
+            }
+        });
+        queue.setCapacity(1);
+        queue.setTaskExecutor(new TaskExecutor() {
+            public void execute(Runnable task) {
+                // no workers, so the queue stays full
+            }
+        });
+        queue.afterPropertiesSet();
+        queue.add(MessageBuilder.withPayload("a").build(), "signup", 0);
+
+        Thread sender = new Thread(new Runnable() {
+            public void run() {
+                queue.add(MessageBuilder.withPayload("b").build(), "signup", 0);
+            }
+        });
+        sender.start();
+        while (sender.getState() != Thread.State.WAITING) {
+            assertNotSame(Thread.State.TERMINATED, sender.getState());
+            Thread.sleep(10);
+        }
+
+        queue.destroy();
+        sender.join(1000);
+        assertFalse(sender.isAlive());
+        assertEquals(2, admitted.size());
+        assertEquals("a", admitted.get(0));
+        assertEquals("b", admitted.get(1));
+    }
+
+    @Test
+    public void testTokenBucket() throws Throwable {
+        TokenBucket tokenBucket = new TokenBucket(10, 2);
+        assertTrue(tokenBucket.tryAcquire());
+        assertTrue(tokenBucket.tryAcquire());
+        assertFalse(tokenBucket.tryAcquire());
+        assertTrue(tokenBucket.timeToNextPermit() > 0);
+        assertFalse(tokenBucket.isFull());
+
+        Thread.sleep(tokenBucket.timeToNextPermit() / 1000000 + 10);
+        assertEquals(0, tokenBucket.timeToNextPermit());
+        assertTrue(tokenBucket.tryAcquire());
+    }
+
+    @Test
+    public void testTheBucketsOfQuietKeysAreSweptOut() throws Throwable {
+        final AtomicInteger admitted = new AtomicInteger();
+        PriorityAdmissionQueue queue = new PriorityAdmissionQueue(new PriorityAdmissionQueue.AdmissionHandler() {
+            public void admit(Message<?> message) {
+                admitted.incrementAndGet();
+            }
+        });
+        queue.setPermitsPerSecond(1000);
+        queue.setBurst(1);
+        queue.afterPropertiesSet();
+
+        int keys = PriorityAdmissionQueue.TOKEN_BUCKET_SWEEP_THRESHOLD * 2;
+        for (int i = 0; i < keys; i++) {
+            queue.add(MessageBuilder.withPayload(i).build(), "key" + i, 0);
+            if (i % 100 == 0) {
+                Thread.sleep(2); // lets the earlier keys' buckets fill up again
+            }
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admitted.get() < keys && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(keys, admitted.get());
+        assertTrue(queue.getTokenBucketCount() <= PriorityAdmissionQueue.TOKEN_BUCKET_SWEEP_THRESHOLD + 1);
+
+        queue.destroy();
+    }
+}
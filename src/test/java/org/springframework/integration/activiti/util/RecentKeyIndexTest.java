@@ -0,0 +1,44 @@
+package org.springframework.integration.activiti.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * tests the bounds and eviction of {@link RecentKeyIndex}
+ *
+ * @author Josh Long
+ */
+public class RecentKeyIndexTest {
+
+    @Test
+    public void testDuplicatesAreRefused() throws Throwable {
+        RecentKeyIndex index = new RecentKeyIndex(100, 60 * 1000);
+        assertTrue(index.add("signup\u0000order-1"));
+        assertFalse(index.add("signup\u0000order-1"));
+        assertTrue(index.add("signup\u0000order-2"));
+        assertTrue(index.contains("signup\u0000order-1"));
+
+        index.remove("signup\u0000order-1");
+        assertTrue(index.add("signup\u0000order-1"));
+    }
+
+    @Test
+    public void testKeysExpire() throws Throwable {
+        RecentKeyIndex index = new RecentKeyIndex(100, 20);
+        assertTrue(index.add("order-1"));
+        Thread.sleep(50);
+        assertFalse(index.contains("order-1"));
+        assertTrue(index.add("order-1"));
+    }
+
+    @Test
+    public void testSizeIsBounded() throws Throwable {
+        RecentKeyIndex index = new RecentKeyIndex(100, 60 * 1000);
+        for (int i = 0; i < 1000; i++) {
+            index.add("order-" + i);
+            assertTrue(index.size() <= 100);
+        }
+    }
+}